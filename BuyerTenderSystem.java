@@ -1,204 +1,4065 @@
 import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
 import java.text.SimpleDateFormat;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.net.URLDecoder;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Portion Size - Serving size advertised by an offer
+enum Portion {
+    SMALL, NORMAL, LARGE;
+
+    static final Portion[] VALUES = values();
+
+    static Portion of(String label) { return valueOf(label.trim().toUpperCase()); }
+    String label() { return name().toLowerCase(); }
+}
+
+// Complexity - How elaborate an offer is to prepare
+enum Complexity {
+    SIMPLE, MEDIUM, COMPLEX;
+
+    static final Complexity[] VALUES = values();
+
+    static Complexity of(String label) { return valueOf(label.trim().toUpperCase()); }
+    String label() { return name().toLowerCase(); }
+}
+
+// Scoring Profile - Weights and thresholds applied by calculateMatchScore
+final class ScoringProfile {
+    static final ScoringProfile DEFAULT = new ScoringProfile(1, new int[] {3, 2, 2, 2, 3}, 15000, 3, 15);
+    private static volatile ScoringProfile active;
+
+    private final int version;
+    private final int cheapestWeight, sweetWeight, largeWeight, simpleWeight, fastestWeight;
+    private final int maxCheapPrice, minSweetness, maxFastDeliveryTime;
+    private final int relevanceWeight;
+
+    // weights are indexed like Criteria.NAMES
+    public ScoringProfile(int version, int[] weights, int maxCheapPrice, int minSweetness, int maxFastDeliveryTime) {
+        this(version, weights, maxCheapPrice, minSweetness, maxFastDeliveryTime, 10);
+    }
+
+    // relevanceWeight is the score that strong free-text matches approach; see relevance()
+    public ScoringProfile(int version, int[] weights, int maxCheapPrice, int minSweetness, int maxFastDeliveryTime,
+                          int relevanceWeight) {
+        if (weights.length != Criteria.NAMES.length) throw new IllegalArgumentException("Expected " + Criteria.NAMES.length + " weights");
+        this.version = version;
+        this.cheapestWeight = weights[0];
+        this.sweetWeight = weights[1];
+        this.largeWeight = weights[2];
+        this.simpleWeight = weights[3];
+        this.fastestWeight = weights[4];
+        this.maxCheapPrice = maxCheapPrice;
+        this.minSweetness = minSweetness;
+        this.maxFastDeliveryTime = maxFastDeliveryTime;
+        this.relevanceWeight = relevanceWeight;
+    }
+
+    // Allocation-free: primitives in, primitive out
+    public int score(int criteria, int price, int deliveryTime, int sweetness, int portion, int complexity) {
+        int score = 0;
+        if ((criteria & Criteria.CHEAPEST) != 0 && price <= maxCheapPrice) score += cheapestWeight;
+        if ((criteria & Criteria.SWEET) != 0 && sweetness >= minSweetness) score += sweetWeight;
+        if ((criteria & Criteria.LARGE) != 0 && portion == Portion.LARGE.ordinal()) score += largeWeight;
+        if ((criteria & Criteria.SIMPLE) != 0 && complexity == Complexity.SIMPLE.ordinal()) score += simpleWeight;
+        if ((criteria & Criteria.FASTEST) != 0 && deliveryTime <= maxFastDeliveryTime) score += fastestWeight;
+        return score;
+    }
+
+    // BM25 relevance in score points, saturating towards relevanceWeight. It depends on the hit alone, not
+    // on the other hits, so scores from different segments or shards can be merged as they are.
+    public int relevance(float bm25) {
+        return Math.round(relevanceWeight * bm25 / (bm25 + 2f));
+    }
+
+    public int getVersion() { return version; }
+
+    // Keys: version, weight.<criterion>, weight.relevance, cheap.maxPrice, sweet.minSweetness, fast.maxDeliveryTime
+    public static ScoringProfile fromProperties(Properties props) {
+        int[] weights = new int[Criteria.NAMES.length];
+        int[] defaults = {DEFAULT.cheapestWeight, DEFAULT.sweetWeight, DEFAULT.largeWeight, DEFAULT.simpleWeight, DEFAULT.fastestWeight};
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Integer.parseInt(props.getProperty("weight." + Criteria.NAMES[i], String.valueOf(defaults[i])));
+        }
+        return new ScoringProfile(
+            Integer.parseInt(props.getProperty("version", String.valueOf(DEFAULT.version + 1))),
+            weights,
+            Integer.parseInt(props.getProperty("cheap.maxPrice", String.valueOf(DEFAULT.maxCheapPrice))),
+            Integer.parseInt(props.getProperty("sweet.minSweetness", String.valueOf(DEFAULT.minSweetness))),
+            Integer.parseInt(props.getProperty("fast.maxDeliveryTime", String.valueOf(DEFAULT.maxFastDeliveryTime))),
+            Integer.parseInt(props.getProperty("weight.relevance", String.valueOf(DEFAULT.relevanceWeight))));
+    }
+
+    // Profile used by SearchRequest; -Dtender.scoring=<properties file> overrides DEFAULT
+    public static ScoringProfile active() {
+        ScoringProfile profile = active;
+        if (profile == null) {
+            synchronized (ScoringProfile.class) {
+                if (active == null) {
+                    String file = System.getProperty("tender.scoring");
+                    if (file == null) {
+                        active = DEFAULT;
+                    } else {
+                        Properties props = new Properties();
+                        try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                            props.load(in);
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot load scoring profile " + file, e);
+                        }
+                        active = fromProperties(props);
+                    }
+                }
+                profile = active;
+            }
+        }
+        return profile;
+    }
+
+    public static void setActive(ScoringProfile profile) { active = profile; }
+}
 
 // Product Model - Represents a seller's offer
 class Product {
-    private String seller, name, category, portion, complexity, delivery;
-    private int price, deliveryTime, sweetness, matchScore;
-    private double rating;
+    private final String seller, name, category, delivery, key;
+    private final Portion portion;
+    private final Complexity complexity;
+    private final int price, deliveryTime, sweetness, deliveryFee;
+    private final double rating;
+
+    public Product(String seller, String name, int price, double rating, int deliveryTime,
+                   String delivery, String category, int sweetness, String portion, String complexity) {
+        this(seller, name, price, rating, deliveryTime, delivery, category, sweetness,
+             Portion.of(portion), Complexity.of(complexity));
+    }
+
+    public Product(String seller, String name, int price, double rating, int deliveryTime,
+                   String delivery, String category, int sweetness, Portion portion, Complexity complexity) {
+        this.seller = seller;
+        this.name = name;
+        this.price = price;
+        this.rating = rating;
+        this.deliveryTime = deliveryTime;
+        this.delivery = delivery;
+        this.deliveryFee = parseDeliveryFee(delivery);
+        this.key = key(seller, name);
+        this.category = category;
+        this.sweetness = sweetness;
+        this.portion = portion;
+        this.complexity = complexity;
+    }
+
+    // "Free" -> 0, "5k" -> 5000, "2500" -> 2500 (IDR); parsed once so pricing never touches the string again
+    static int parseDeliveryFee(String delivery) {
+        String text = delivery.trim().toLowerCase();
+        if (text.isEmpty() || text.equals("free")) return 0;
+        int multiplier = 1;
+        if (text.endsWith("k")) {
+            multiplier = 1000;
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        try {
+            return Math.multiplyExact(Integer.parseInt(text), multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Unrecognized delivery fee: " + delivery, e);
+        }
+    }
+
+    public int getDeliveryFee() { return deliveryFee; }
+    public int getTotalPrice() { return price + deliveryFee; }
+
+    public int calculateMatchScore(Map<String, Boolean> criteria) {
+        return calculateMatchScore(Criteria.fromMap(criteria), ScoringProfile.DEFAULT);
+    }
+
+    public int calculateMatchScore(int criteria, ScoringProfile profile) {
+        return profile.score(criteria, price, deliveryTime, sweetness, portion.ordinal(), complexity.ordinal());
+    }
+
+    // Stable identity of the offer: the seller plus the seller's product name
+    public String getKey() { return key; }
+
+    // The seller's length prefix keeps keys distinct when either part contains the separator
+    static String key(String seller, String name) { return seller.length() + ":" + seller + "/" + name; }
+    public String getSeller() { return seller; }
+    public String getName() { return name; }
+    public int getPrice() { return price; }
+    public double getRating() { return rating; }
+    public int getDeliveryTime() { return deliveryTime; }
+    public String getDelivery() { return delivery; }
+    public String getCategory() { return category; }
+    public int getSweetness() { return sweetness; }
+    public Portion getPortion() { return portion; }
+    public Complexity getComplexity() { return complexity; }
+}
+
+// Criteria - Bit flags for the preferences a buyer can express in a tender
+final class Criteria {
+    static final int CHEAPEST = 1;
+    static final int SWEET = 1 << 1;
+    static final int LARGE = 1 << 2;
+    static final int SIMPLE = 1 << 3;
+    static final int FASTEST = 1 << 4;
+    static final String[] NAMES = {"cheapest", "sweet", "large", "simple", "fastest"};
+
+    private Criteria() {}
+
+    static int bit(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) return 1 << i;
+        }
+        throw new IllegalArgumentException("Unknown criterion: " + name);
+    }
+
+    static int fromMap(Map<String, Boolean> map) {
+        int mask = 0;
+        for (int i = 0; i < NAMES.length; i++) {
+            if (map.getOrDefault(NAMES[i], false)) mask |= 1 << i;
+        }
+        return mask;
+    }
+}
+
+// Sort Key - Order in which ranked offers are returned
+enum SortKey {
+    BEST_MATCH,     // highest match score, then lowest list price
+    TOTAL_PRICE     // lowest price including delivery, then highest match score
+}
+
+// Keyword Dictionary - Aho-Corasick automaton mapping query terms to criteria and categories
+class KeywordDictionary {
+    private static volatile KeywordDictionary active;
+
+    private final String[] categories;   // index = priority, 0 wins
+    private final String defaultCategory;
+    // Flattened automaton: per state a sorted edge list, failure link and outputs
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[] outMask;
+    private final int[] outCategory;     // best (lowest) category index reachable, or MAX_VALUE
+    private final boolean[] terminal;    // state spells a whole dictionary term
+
+    private KeywordDictionary(Map<String, Integer> criteriaTerms, Map<String, Integer> categoryTerms,
+                              List<String> categories, String defaultCategory) {
+        this.categories = categories.toArray(new String[0]);
+        this.defaultCategory = defaultCategory;
+
+        List<Map<Character, Integer>> goTo = new ArrayList<>();
+        List<Integer> masks = new ArrayList<>();
+        List<Integer> cats = new ArrayList<>();
+        goTo.add(new TreeMap<>());
+        masks.add(0);
+        cats.add(Integer.MAX_VALUE);
+        Set<Integer> ends = new HashSet<>();
+        for (Map.Entry<String, Integer> e : criteriaTerms.entrySet()) {
+            int state = insert(goTo, masks, cats, e.getKey());
+            masks.set(state, masks.get(state) | e.getValue());
+            ends.add(state);
+        }
+        for (Map.Entry<String, Integer> e : categoryTerms.entrySet()) {
+            int state = insert(goTo, masks, cats, e.getKey());
+            cats.set(state, Math.min(cats.get(state), e.getValue()));
+            ends.add(state);
+        }
+
+        int n = goTo.size();
+        terminal = new boolean[n];
+        for (int state : ends) terminal[state] = true;
+        edgeChars = new char[n][];
+        edgeTargets = new int[n][];
+        fail = new int[n];
+        outMask = new int[n];
+        outCategory = new int[n];
+        for (int s = 0; s < n; s++) {
+            Map<Character, Integer> edges = goTo.get(s);
+            edgeChars[s] = new char[edges.size()];
+            edgeTargets[s] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> e : edges.entrySet()) {
+                edgeChars[s][i] = e.getKey();
+                edgeTargets[s][i++] = e.getValue();
+            }
+            outMask[s] = masks.get(s);
+            outCategory[s] = cats.get(s);
+        }
+
+        // Breadth-first failure links; outputs of the failure state are merged in
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int t : edgeTargets[0]) queue.add(t);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < edgeChars[s].length; i++) {
+                char c = edgeChars[s][i];
+                int t = edgeTargets[s][i];
+                int f = fail[s];
+                while (f != 0 && step(f, c) < 0) f = fail[f];
+                int next = step(f, c);
+                fail[t] = next >= 0 && next != t ? next : 0;
+                outMask[t] |= outMask[fail[t]];
+                outCategory[t] = Math.min(outCategory[t], outCategory[fail[t]]);
+                queue.add(t);
+            }
+        }
+    }
+
+    private static int insert(List<Map<Character, Integer>> goTo, List<Integer> masks, List<Integer> cats, String term) {
+        int state = 0;
+        for (int i = 0; i < term.length(); i++) {
+            char c = Character.toLowerCase(term.charAt(i));
+            Integer next = goTo.get(state).get(c);
+            if (next == null) {
+                next = goTo.size();
+                goTo.add(new TreeMap<>());
+                masks.add(0);
+                cats.add(Integer.MAX_VALUE);
+                goTo.get(state).put(c, next);
+            }
+            state = next;
+        }
+        return state;
+    }
+
+    private int step(int state, char c) {
+        int idx = Arrays.binarySearch(edgeChars[state], c);
+        return idx >= 0 ? edgeTargets[state][idx] : -1;
+    }
+
+    // Single linear pass; returns the criteria mask in the low word and category index in the high word
+    public long scan(CharSequence text) {
+        int state = 0, mask = 0, category = Integer.MAX_VALUE;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = step(state, c)) < 0 && state != 0) state = fail[state];
+            state = next < 0 ? 0 : next;
+            mask |= outMask[state];
+            if (outCategory[state] < category) category = outCategory[state];
+        }
+        return ((long) category << 32) | (mask & 0xFFFFFFFFL);
+    }
+
+    public static int criteriaOf(long scan) { return (int) scan; }
+
+    public boolean hasCategory(long scan) { return (int) (scan >>> 32) < categories.length; }
+
+    // Whole-token match only: "pilot" contains the term "lot" but is not itself a term
+    public boolean isTerm(String token) {
+        int state = 0;
+        for (int i = 0; i < token.length() && state >= 0; i++) state = step(state, Character.toLowerCase(token.charAt(i)));
+        return state >= 0 && terminal[state];
+    }
+
+    public String categoryOf(long scan) {
+        int idx = (int) (scan >>> 32);
+        return idx < categories.length ? categories[idx] : defaultCategory;
+    }
+
+    public static KeywordDictionary defaults() {
+        List<String> lines = Arrays.asList(
+            "criterion cheapest = cheap, budget, affordable",
+            "criterion sweet = sweet",
+            "criterion large = large, big, jumbo, lot",
+            "criterion simple = simple, easy, basic",
+            "criterion fastest = fast, quick, rapid",
+            "category padang = padang, rendang",
+            "category beverage = drink, beverage, coffee, tea, juice",
+            "category electronics = charger, electronic, gadget",
+            "default food");
+        return parse(lines);
+    }
+
+    // Format: "criterion <name> = t1, t2", "category <name> = t1, t2" (earlier wins), "default <name>", '#' comments
+    public static KeywordDictionary load(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) lines.add(line);
+        }
+        return parse(lines);
+    }
+
+    private static KeywordDictionary parse(List<String> lines) {
+        Map<String, Integer> criteriaTerms = new LinkedHashMap<>();
+        Map<String, Integer> categoryTerms = new LinkedHashMap<>();
+        List<String> categories = new ArrayList<>();
+        String defaultCategory = "food";
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] head = line.split("\\s+", 2);
+            if (head[0].equals("default") && head.length == 2) {
+                defaultCategory = head[1].trim();
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (head.length < 2 || eq < 0) throw new IllegalArgumentException("Malformed dictionary line: " + raw);
+            String name = line.substring(head[0].length(), eq).trim();
+            String[] terms = line.substring(eq + 1).split(",");
+            if (head[0].equals("criterion")) {
+                int bit = Criteria.bit(name);
+                for (String t : terms) {
+                    if (!t.isBlank()) criteriaTerms.merge(t.trim().toLowerCase(), bit, (a, b) -> a | b);
+                }
+            } else if (head[0].equals("category")) {
+                int idx = categories.indexOf(name);
+                if (idx < 0) { idx = categories.size(); categories.add(name); }
+                for (String t : terms) {
+                    if (!t.isBlank()) categoryTerms.merge(t.trim().toLowerCase(), idx, Math::min);
+                }
+            } else {
+                throw new IllegalArgumentException("Malformed dictionary line: " + raw);
+            }
+        }
+        return new KeywordDictionary(criteriaTerms, categoryTerms, categories, defaultCategory);
+    }
+
+    // Dictionary used by SearchRequest; -Dtender.keywords=<file> overrides the built-in terms
+    public static KeywordDictionary active() {
+        KeywordDictionary dict = active;
+        if (dict == null) {
+            synchronized (KeywordDictionary.class) {
+                if (active == null) {
+                    String file = System.getProperty("tender.keywords");
+                    try {
+                        active = file == null ? defaults() : load(Paths.get(file));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Cannot load keyword dictionary " + file, e);
+                    }
+                }
+                dict = active;
+            }
+        }
+        return dict;
+    }
+
+    public static void setActive(KeywordDictionary dict) { active = dict; }
+}
+
+// Ranked Results - Immutable products paired with their match scores, best first
+final class RankedResults {
+    static final RankedResults EMPTY = new RankedResults(new Product[0], new int[0]);
+
+    private final Product[] products;
+    private final int[] scores;
+
+    // Takes ownership of the arrays; callers must not modify them afterwards
+    RankedResults(Product[] products, int[] scores) {
+        this.products = products;
+        this.scores = scores;
+    }
+
+    public int size() { return products.length; }
+    public boolean isEmpty() { return products.length == 0; }
+    public Product product(int rank) { return products[rank]; }
+    public int score(int rank) { return scores[rank]; }
+
+    public List<Product> asList() { return Collections.unmodifiableList(Arrays.asList(products)); }
+
+    public RankedResults head(int limit) {
+        if (limit >= products.length) return this;
+        return new RankedResults(Arrays.copyOf(products, limit), Arrays.copyOf(scores, limit));
+    }
+}
+
+// Top-K Selector - Bounded heap that picks the best-ranked candidates without sorting them all
+final class TopKSelector {
+    private final int[] scores, prices;
+    private final boolean priceFirst;
+    private final int[] heap;
+    private int size;
+
+    // Rank order: higher score, then lower price, then earlier candidate (same as a stable sort);
+    // priceFirst swaps the first two keys
+    TopKSelector(int[] scores, int[] prices, boolean priceFirst, int k) {
+        this.scores = scores;
+        this.prices = prices;
+        this.priceFirst = priceFirst;
+        this.heap = new int[Math.max(k, 0)];
+    }
+
+    boolean before(int a, int b) {
+        if (priceFirst && prices[a] != prices[b]) return prices[a] < prices[b];
+        if (scores[a] != scores[b]) return scores[a] > scores[b];
+        if (prices[a] != prices[b]) return prices[a] < prices[b];
+        return a < b;
+    }
+
+    // Offers candidate c; the heap root is always the worst candidate kept so far
+    void offer(int c) {
+        if (size < heap.length) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(heap[parent], c)) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = c;
+        } else if (size > 0 && before(c, heap[0])) {
+            siftDown(c, size);
+        }
+    }
+
+    private void siftDown(int c, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && before(heap[child], heap[child + 1])) child++;
+            if (!before(c, heap[child])) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = c;
+    }
+
+    // Offers candidates in [from, to) that rank strictly after candidate `after` (-1 for none)
+    TopKSelector offerRange(int from, int to, int after) {
+        for (int c = from; c < to; c++) {
+            if (after < 0 || before(after, c)) offer(c);
+        }
+        return this;
+    }
+
+    // Merges two best-first id lists, keeping at most k
+    int[] merge(int[] a, int[] b, int k) {
+        int[] out = new int[Math.min(k, a.length + b.length)];
+        int i = 0, j = 0;
+        for (int n = 0; n < out.length; n++) {
+            out[n] = j >= b.length || (i < a.length && before(a[i], b[j])) ? a[i++] : b[j++];
+        }
+        return out;
+    }
+
+    // Drains the heap into candidate ids ordered best first
+    int[] drain() {
+        int[] out = new int[size];
+        for (int n = size; n > 0; n--) {
+            out[n - 1] = heap[0];
+            int last = heap[n - 1];
+            if (n > 1) siftDown(last, n - 1);
+        }
+        size = 0;
+        return out;
+    }
+}
+
+// Parallel Ranker - Fork-join scoring and per-chunk top-K for very large categories
+final class ParallelRanker {
+    private final ForkJoinPool pool;
+    private final int leafSize;
+    private final Runnable checkpoint;
+
+    // checkpoint runs before every leaf and throws to abandon the work; pool workers are never interrupted
+    ParallelRanker(ForkJoinPool pool, int candidates, Runnable checkpoint) {
+        this.pool = pool;
+        this.leafSize = Math.max(4096, candidates / (pool.getParallelism() * 4));
+        this.checkpoint = checkpoint;
+    }
+
+    // Scores candidates [from, to) in chunks; each chunk writes only its own slots
+    interface RangeScorer {
+        void score(int from, int to);
+    }
+
+    void score(int from, int to, RangeScorer scorer) {
+        pool.invoke(new ScoreTask(scorer, from, to));
+    }
+
+    int[] select(int[] scores, int[] prices, boolean priceFirst, int count, int k, int after) {
+        return pool.invoke(new SelectTask(scores, prices, priceFirst, 0, count, k, after));
+    }
+
+    private final class ScoreTask extends RecursiveAction {
+        private final RangeScorer scorer;
+        private final int from, to;
+
+        ScoreTask(RangeScorer scorer, int from, int to) {
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                checkpoint.run();
+                scorer.score(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(scorer, from, mid), new ScoreTask(scorer, mid, to));
+        }
+    }
+
+    private final class SelectTask extends RecursiveTask<int[]> {
+        private final int[] scores, prices;
+        private final boolean priceFirst;
+        private final int from, to, k, after;
+
+        SelectTask(int[] scores, int[] prices, boolean priceFirst, int from, int to, int k, int after) {
+            this.scores = scores;
+            this.prices = prices;
+            this.priceFirst = priceFirst;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.after = after;
+        }
+
+        @Override
+        protected int[] compute() {
+            TopKSelector selector = new TopKSelector(scores, prices, priceFirst, Math.min(k, to - from));
+            if (to - from <= leafSize) {
+                checkpoint.run();
+                return selector.offerRange(from, to, after).drain();
+            }
+            int mid = (from + to) >>> 1;
+            SelectTask left = new SelectTask(scores, prices, priceFirst, from, mid, k, after);
+            left.fork();
+            int[] right = new SelectTask(scores, prices, priceFirst, mid, to, k, after).compute();
+            return selector.merge(left.join(), right, k);
+        }
+    }
+}
+
+// Search Request - Models customer tender request
+class SearchRequest {
+    // Candidate count from which scoring and selection fork across the pool
+    static final int DEFAULT_PARALLEL_THRESHOLD = Integer.getInteger("tender.parallelThreshold", 50_000);
+    // Reported category of a free-text search that spanned every category
+    static final String ALL_CATEGORIES = "all";
+
+    private long id;
+    private String query;
+    private String timestamp;
+    private Product[] candidates;
+    private CatalogSegment segment;
+    private CatalogSegment[] owners;   // per candidate, when text matches span several segments
+    private int[] rows;
+    private int[] scores;
+    private int[] prices;
+    private int candidateCount;
+    private int pageCursor;
+    private int criteriaMask;
+    private ScoringProfile profile;
+    private String category;
+    private boolean categoryMatched;
+    private boolean textMatched;
+    private List<String> textTerms;
+    private Map<String, TextIndex.Stats> textStats;
+    private SortKey sortKey = SortKey.BEST_MATCH;
+    private int maxTotalPrice = Integer.MAX_VALUE;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private volatile boolean cancelled;
+
+    public SearchRequest(String query) {
+        this.id = System.currentTimeMillis();
+        this.query = query;
+        this.timestamp = new SimpleDateFormat("HH:mm").format(new Date());
+        this.candidates = new Product[0];
+        this.scores = new int[0];
+        this.prices = new int[0];
+        this.pageCursor = -1;
+        KeywordDictionary dictionary = KeywordDictionary.active();
+        long scan = dictionary.scan(query);
+        this.criteriaMask = KeywordDictionary.criteriaOf(scan);
+        this.profile = ScoringProfile.active();
+        this.category = dictionary.categoryOf(scan);
+        this.categoryMatched = dictionary.hasCategory(scan);
+        this.textTerms = TextIndex.queryTerms(query, dictionary);
+    }
+
+    // Scores into this request's own arrays; the shared Product instances are never written.
+    // prices holds the list price, or the landed total when sorting by TOTAL_PRICE.
+    public void addProducts(List<Product> products) {
+        if (segment != null || owners != null) throw new IllegalStateException("Request already reads from a catalog segment");
+        int needed = candidateCount + products.size();
+        if (needed > candidates.length) {
+            candidates = Arrays.copyOf(candidates, needed);
+            scores = Arrays.copyOf(scores, needed);
+            prices = Arrays.copyOf(prices, needed);
+        }
+        int from = candidateCount;
+        boolean parallel = products.size() >= parallelThreshold;
+        for (Product p : products) {
+            if ((candidateCount & 0xFFF) == 0) checkCancelled();
+            if (p.getTotalPrice() > maxTotalPrice) continue;
+            candidates[candidateCount] = p;
+            prices[candidateCount] = sortKey == SortKey.TOTAL_PRICE ? p.getTotalPrice() : p.getPrice();
+            if (!parallel) scores[candidateCount] = p.calculateMatchScore(criteriaMask, profile);
+            candidateCount++;
+        }
+        if (parallel) {
+            Product[] list = candidates;
+            new ParallelRanker(pool, products.size(), this::checkCancelled).score(from, candidateCount, (a, b) -> {
+                for (int i = a; i < b; i++) scores[i] = list[i].calculateMatchScore(criteriaMask, profile);
+            });
+        }
+        pageCursor = -1;
+    }
+
+    // Scores straight from a segment's columns; Product objects are only resolved for the pages returned.
+    // A total-price cap is answered from the segment's range index instead of a scan.
+    public void addSegment(CatalogSegment segment) {
+        if (candidateCount > 0 || this.segment != null || owners != null) {
+            throw new IllegalStateException("addSegment must be the only candidate source");
+        }
+        int n = segment.size();
+        int[] selected = null;
+        if (maxTotalPrice != Integer.MAX_VALUE) {
+            selected = segment.rowsWithTotalPriceAtMost(maxTotalPrice);   // catalog order keeps tie-breaking identical to addProducts
+            n = selected.length;
+        } else if (segment.liveCount() < n) {
+            selected = segment.liveRows();   // skips rows an overlay replaced or deleted
+            n = selected.length;
+        }
+        this.segment = segment;
+        this.rows = selected;
+        this.scores = new int[n];
+        this.prices = new int[n];
+        this.candidateCount = n;
+        if (n >= parallelThreshold) {
+            new ParallelRanker(pool, n, this::checkCancelled).score(0, n, this::scoreRows);
+        } else {
+            scoreRows(0, n);
+        }
+        pageCursor = -1;
+    }
+
+    private void scoreRows(int from, int to) {
+        boolean totals = sortKey == SortKey.TOTAL_PRICE;
+        for (int i = from; i < to; i++) {
+            if ((i & 0xFFF) == 0) checkCancelled();
+            int row = rows == null ? i : rows[i];
+            prices[i] = totals ? segment.totalPrice(row) : segment.price(row);
+            scores[i] = segment.score(row, criteriaMask, profile);
+        }
+    }
+
+    /**
+     * Takes as candidates the offers in `segments` whose name, seller or category match the query's
+     * free-text terms, allowing for typos. Each scores its criteria points plus the profile's points
+     * for its BM25 relevance. Returns false, adding nothing, when no offer matched so the caller can
+     * fall back to the category.
+     */
+    public boolean addTextMatches(Collection<CatalogSegment> segments) {
+        if (candidateCount > 0 || segment != null || owners != null) {
+            throw new IllegalStateException("addTextMatches must be the only candidate source");
+        }
+        List<CatalogSegment> matched = new ArrayList<>();
+        List<TextIndex.Hits> hits = new ArrayList<>();
+        int total = 0;
+        for (CatalogSegment s : segments) {
+            if (textTerms.isEmpty()) break;
+            TextIndex.Stats stats = textStats == null ? null : textStats.get(s.getCategory());
+            TextIndex.Hits h = stats == null ? s.textSearch(textTerms) : s.textSearch(textTerms, stats);
+            if (h.size() == 0) continue;
+            matched.add(s);
+            hits.add(h);
+            total += h.size();
+        }
+        if (total == 0) return false;
+
+        owners = new CatalogSegment[total];
+        rows = new int[total];
+        scores = new int[total];
+        prices = new int[total];
+        boolean totals = sortKey == SortKey.TOTAL_PRICE;
+        int n = 0;
+        for (int m = 0; m < matched.size(); m++) {
+            CatalogSegment s = matched.get(m);
+            TextIndex.Hits h = hits.get(m);
+            for (int j = 0; j < h.size(); j++) {
+                if ((n & 0xFFF) == 0) checkCancelled();
+                int row = h.doc(j);
+                if (s.totalPrice(row) > maxTotalPrice) continue;
+                owners[n] = s;
+                rows[n] = row;
+                prices[n] = totals ? s.totalPrice(row) : s.price(row);
+                scores[n] = s.score(row, criteriaMask, profile) + profile.relevance(h.score(j));
+                n++;
+            }
+        }
+        candidateCount = n;
+        textMatched = true;
+        if (!categoryMatched) category = ALL_CATEGORIES;
+        pageCursor = -1;
+        return true;
+    }
+
+    // Called by whoever superseded this search; scoring and selection stop at their next checkpoint
+    public void cancel() { cancelled = true; }
+    public boolean isCancelled() { return cancelled; }
+
+    // Fork-join workers never see the submitting thread's interrupt, so they read the flag instead
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) throw new CancellationException("Search cancelled: " + query);
+    }
+
+    private Product candidate(int i) {
+        if (owners != null) return owners[i].product(rows[i]);
+        if (segment == null) return candidates[i];
+        return segment.product(rows == null ? i : rows[i]);
+    }
+
+    private RankedResults select(int limit, int after) {
+        int k = Math.min(limit, candidateCount);
+        int[] ids = candidateCount >= parallelThreshold
+            ? new ParallelRanker(pool, candidateCount, this::checkCancelled).select(scores, prices, priceFirst(), candidateCount, k, after)
+            : new TopKSelector(scores, prices, priceFirst(), k).offerRange(0, candidateCount, after).drain();
+        Product[] ranked = new Product[ids.length];
+        int[] rankedScores = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ranked[i] = candidate(ids[i]);
+            rankedScores[i] = scores[ids[i]];
+        }
+        if (ids.length > 0) pageCursor = ids[ids.length - 1];
+        return new RankedResults(ranked, rankedScores);
+    }
+
+    // Best `limit` candidates; also restarts paging so nextPage continues after them
+    public RankedResults getTopRanked(int limit) {
+        return select(limit, -1);
+    }
+
+    // Next `limit` candidates after the last page handed out, reusing the stored scores
+    public RankedResults nextPage(int limit) {
+        return select(limit, pageCursor);
+    }
+
+    public List<Product> getTopResults(int limit) {
+        return getTopRanked(limit).asList();
+    }
+
+    public long getId() { return id; }
+    public String getQuery() { return query; }
+    public String getCategory() { return category; }
+    public int getCriteriaMask() { return criteriaMask; }
+    public ScoringProfile getProfile() { return profile; }
+    // Query words that are neither dictionary terms nor stop words, matched against offer text
+    public List<String> getTextTerms() { return textTerms; }
+    public boolean isCategoryMatched() { return categoryMatched; }
+    // True when free-text matches supplied the candidates rather than the category fallback
+    public boolean isTextMatched() { return textMatched; }
+    public int getResultCount() { return candidateCount; }
+    // False for a request answered from the cache, which never scored its own candidates
+    public boolean isScored() { return candidateCount > 0 || segment != null || owners != null; }
+
+    private boolean priceFirst() { return sortKey == SortKey.TOTAL_PRICE; }
+
+    public SortKey getSortKey() { return sortKey; }
+    public int getMaxTotalPrice() { return maxTotalPrice; }
+
+    // Set before addProducts; candidates are keyed and filtered as they are added
+    public void setSortKey(SortKey sortKey) { this.sortKey = sortKey; }
+    public void setMaxTotalPrice(int maxTotalPrice) { this.maxTotalPrice = maxTotalPrice; }
+    // BM25 statistics per category covering more than the searched catalog, e.g. all of a coordinator's shards
+    public void setTextStats(Map<String, TextIndex.Stats> textStats) { this.textStats = textStats; }
+
+    // The scope a cached answer was computed for; the cache restores it so results report the same scope
+    void restoreScope(String category, boolean textMatched) {
+        this.category = category;
+        this.textMatched = textMatched;
+    }
+
+    // Below `threshold` candidates everything runs on the calling thread
+    public void setParallelThreshold(int threshold) { this.parallelThreshold = threshold; }
+    public void setPool(ForkJoinPool pool) { this.pool = pool; }
+}
+
+// Search Cache - LRU/TTL cache of ranked top-K keyed by category, criteria and scoring profile
+// Entries are spread over independently locked LRU stripes, so concurrent searches rarely share a lock.
+class SearchCache {
+    private static final int STRIPES = 16;
+
+    private final long ttlNanos;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SearchCache(int capacity, long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe((capacity + STRIPES - 1) / STRIPES);
+    }
+
+    // Access-ordered LRU for one slice of the keys; guarded by its own monitor
+    private final class Stripe extends LinkedHashMap<Key, Entry> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private Stripe stripe(Key key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Answers from the cache when possible, otherwise scores the request against the DAO and stores the result.
+    // Free-text terms are matched within the query's category, or across all categories when it names none;
+    // with no text hits the request falls back to ranking its category.
+    public RankedResults search(SearchRequest request, ProductDAO db, int limit) {
+        TenderMetrics metrics = TenderMetrics.get();
+        long start = System.nanoTime();
+        ProductDAO.Snapshot snapshot = db.snapshot();
+        CatalogSegment segment = snapshot.getSegment(request.getCategory());
+        boolean text = !request.getTextTerms().isEmpty();
+        boolean everyCategory = text && !request.isCategoryMatched();
+        // A search over every category depends on the whole snapshot rather than one segment. Entries keep
+        // only this number, so a replaced segment or snapshot is never held alive by the cache.
+        long source = everyCategory ? snapshot.getVersion() : segment == null ? 0 : segment.getId();
+        Key key = new Key(request.getCategory(), String.join(" ", request.getTextTerms()), request.getCriteriaMask(),
+                          request.getProfile().getVersion(), request.getSortKey(), request.getMaxTotalPrice());
+        Entry cached = lookup(key, source, limit);
+        long looked = System.nanoTime();
+        metrics.record(TenderMetrics.Stage.CATEGORY_LOOKUP, looked - start);
+        if (cached != null) {
+            request.restoreScope(cached.category, cached.textMatched);
+            return cached.results.head(limit);
+        }
+
+        addCandidates(request, snapshot);
+        long scored = System.nanoTime();
+        metrics.record(TenderMetrics.Stage.SCORING, scored - looked);
+        metrics.candidates(request.getCategory(), request.getResultCount());
+        RankedResults top = request.getTopRanked(limit);
+        metrics.record(TenderMetrics.Stage.RANKING, System.nanoTime() - scored);
+        store(key, new Entry(top, limit, source, request.getCategory(), request.isTextMatched(), System.nanoTime()));
+        return top;
+    }
+
+    // Text matches when the query has free-text terms that match, otherwise the category's segment
+    static void addCandidates(SearchRequest request, ProductDAO.Snapshot snapshot) {
+        CatalogSegment segment = snapshot.getSegment(request.getCategory());
+        boolean matched = !request.getTextTerms().isEmpty() && request.addTextMatches(textScope(request, snapshot));
+        if (!matched && segment != null) request.addSegment(segment);
+    }
+
+    // The segments a request's free-text terms are matched in: its category's, or all when it names none
+    static Collection<CatalogSegment> textScope(SearchRequest request, ProductDAO.Snapshot snapshot) {
+        if (!request.isCategoryMatched()) return snapshot.getSegments();
+        CatalogSegment segment = snapshot.getSegment(request.getCategory());
+        return segment == null ? Collections.<CatalogSegment>emptyList() : Collections.singletonList(segment);
+    }
+
+    private Entry lookup(Key key, long source, int limit) {
+        Stripe stripe = stripe(key);
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.get(key);
+            if (entry != null && (entry.source != source || System.nanoTime() - entry.created > ttlNanos)) {
+                // the category was reloaded or the entry aged out
+                stripe.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry == null || limit > entry.limit) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    private void store(Key key, Entry entry) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry previous = stripe.get(key);
+            if (previous == null || previous.limit <= entry.limit || previous.source != entry.source) stripe.put(key, entry);
+        }
+    }
+
+    public void invalidate(String category) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Key> it = stripe.keySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().category.equals(category)) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) { stripe.clear(); }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) { size += stripe.size(); }
+        }
+        return size;
+    }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    public String stats() {
+        return String.format("cache size=%d hits=%d misses=%d evictions=%d", size(), getHits(), getMisses(), getEvictions());
+    }
+
+    private static final class Key {
+        final String category, text;
+        final int criteria, profileVersion, maxTotalPrice;
+        final SortKey sortKey;
+
+        Key(String category, String text, int criteria, int profileVersion, SortKey sortKey, int maxTotalPrice) {
+            this.category = category;
+            this.text = text;
+            this.criteria = criteria;
+            this.profileVersion = profileVersion;
+            this.sortKey = sortKey;
+            this.maxTotalPrice = maxTotalPrice;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return criteria == k.criteria && profileVersion == k.profileVersion && sortKey == k.sortKey
+                && maxTotalPrice == k.maxTotalPrice && category.equals(k.category) && text.equals(k.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((((category.hashCode() * 31 + text.hashCode()) * 31 + criteria) * 31 + profileVersion) * 31 + sortKey.hashCode()) * 31 + maxTotalPrice;
+        }
+    }
+
+    private static final class Entry {
+        final RankedResults results;
+        final int limit;
+        final long source;       // id of the segment, or version of the snapshot, the results came from
+        final String category;
+        final boolean textMatched;
+        final long created;
+
+        Entry(RankedResults results, int limit, long source, String category, boolean textMatched, long created) {
+            this.results = results;
+            this.limit = limit;
+            this.source = source;
+            this.category = category;
+            this.textMatched = textMatched;
+            this.created = created;
+        }
+    }
+}
+
+// Catalog Segment - Immutable columnar index over one category's offers
+abstract class CatalogSegment {
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final String category;
+    private final long id = IDS.incrementAndGet();
+    private final FutureTask<TextIndex> textIndex = new FutureTask<>(() -> TextIndex.build(this));
+
+    protected CatalogSegment(String category) { this.category = category; }
+
+    public abstract int size();
+    public abstract Product product(int id);
+    public abstract int price(int id);
+    public abstract int totalPrice(int id);
+    public abstract int deliveryTime(int id);
+    public abstract int sweetness(int id);
+    public abstract double rating(int id);
+    public abstract byte portion(int id);
+    public abstract byte complexity(int id);
+
+    // Row ids ordered by total price, the budget filter's range index; ties keep catalog order
+    public abstract int idByTotalPrice(int rank);
+
+    // Entry `rank` of the key index: (key hash << 32 | row), sorted, so 8 bytes per row and no strings
+    protected abstract long keyEntry(int rank);
+
+    static long[] keyIndex(CatalogSegment segment) {
+        long[] entries = new long[segment.size()];
+        for (int row = 0; row < entries.length; row++) {
+            entries[row] = ((long) segment.product(row).getKey().hashCode() << 32) | row;
+        }
+        Arrays.sort(entries);
+        return entries;
+    }
+
+    // Row of the live offer with this Product.getKey(), or -1; hash collisions are settled by comparing keys
+    public int rowOf(String key) {
+        int hash = key.hashCode(), n = size(), lo = 0, hi = n;
+        long first = (long) hash << 32;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyEntry(mid) < first) lo = mid + 1; else hi = mid;
+        }
+        for (int i = lo; i < n && (int) (keyEntry(i) >> 32) == hash; i++) {
+            int row = (int) keyEntry(i);
+            if (product(row).getKey().equals(key)) return row;
+        }
+        return -1;
+    }
+
+    // Overlays keep replaced and deleted rows in place; every other segment's rows are all live
+    public boolean isLive(int id) { return true; }
+    public int liveCount() { return size(); }
+
+    public int[] liveRows() {
+        int[] rows = new int[liveCount()];
+        for (int id = 0, n = 0; id < size(); id++) {
+            if (isLive(id)) rows[n++] = id;
+        }
+        return rows;
+    }
+
+    // Live rows whose total price is <= max, ascending so ties keep catalog order
+    public int[] rowsWithTotalPriceAtMost(int max) {
+        int[] rows = new int[countTotalPriceAtMost(max)];
+        for (int i = 0; i < rows.length; i++) rows[i] = idByTotalPrice(i);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    public String getCategory() { return category; }
+    // Unique per segment instance; caches compare it instead of holding on to the segment
+    public long getId() { return id; }
+
+    // Built in the background when ProductDAO indexes eagerly, else by the first text search; segments are immutable, so it never goes stale
+    void buildTextIndex(ExecutorService executor) { executor.execute(textIndex); }
+    boolean isTextIndexed() { return textIndex.isDone(); }
+
+    // Waits, without holding a lock, if the build is still running; builds it here if nobody started it
+    public TextIndex textIndex() {
+        textIndex.run();   // returns at once when the build is running or done
+        try {
+            return textIndex.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for the text index of " + category);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Text index build failed for " + category, e.getCause());
+        }
+    }
+
+    // Live rows matching the words; see TextIndex.search
+    public TextIndex.Hits textSearch(List<String> words) { return textSearch(words, textStats(words)); }
+
+    // BM25 collection statistics for the words, and a search scored with statistics gathered over more than this segment
+    public TextIndex.Stats textStats(List<String> words) { return textIndex().stats(words); }
+    public TextIndex.Hits textSearch(List<String> words, TextIndex.Stats stats) { return textIndex().search(words, stats); }
+
+    public int score(int id, int criteria, ScoringProfile profile) {
+        return profile.score(criteria, price(id), deliveryTime(id), sweetness(id), portion(id), complexity(id));
+    }
+
+    // Number of rows whose value is <= max, i.e. the prefix length of the sorted ids
+    public int countTotalPriceAtMost(int max) {
+        int lo = 0, hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (totalPrice(idByTotalPrice(mid)) <= max) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Read-only view; rows are resolved through product(id) on access
+    public List<Product> getProducts() {
+        return new AbstractList<Product>() {
+            @Override public Product get(int index) { return product(index); }
+            @Override public int size() { return CatalogSegment.this.size(); }
+        };
+    }
+}
+
+// Array Segment - Heap-resident segment built from Product objects
+class ArraySegment extends CatalogSegment {
+    private final Product[] products;
+    private final int[] price, totalPrice, deliveryTime, sweetness;
+    private final double[] rating;
+    private final byte[] portion, complexity;
+    private final int[] byTotalPrice;
+    private final List<Product> view;
+    private volatile long[] keys;   // built on the first key lookup
+
+    public ArraySegment(String category, List<Product> offers) {
+        super(category);
+        int n = offers.size();
+        this.products = offers.toArray(new Product[0]);
+        this.price = new int[n];
+        this.totalPrice = new int[n];
+        this.deliveryTime = new int[n];
+        this.sweetness = new int[n];
+        this.rating = new double[n];
+        this.portion = new byte[n];
+        this.complexity = new byte[n];
+        for (int i = 0; i < n; i++) {
+            Product p = products[i];
+            price[i] = p.getPrice();
+            totalPrice[i] = p.getTotalPrice();
+            deliveryTime[i] = p.getDeliveryTime();
+            sweetness[i] = p.getSweetness();
+            rating[i] = p.getRating();
+            portion[i] = (byte) p.getPortion().ordinal();
+            complexity[i] = (byte) p.getComplexity().ordinal();
+        }
+        this.byTotalPrice = sortedBy(totalPrice);
+        this.view = Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    static int[] sortedBy(int[] column) {
+        long[] keys = new long[column.length];
+        for (int i = 0; i < column.length; i++) keys[i] = ((long) column[i] << 32) | i;
+        Arrays.sort(keys);
+        int[] ids = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) ids[i] = (int) keys[i];
+        return ids;
+    }
+
+    @Override public int size() { return products.length; }
+    @Override public Product product(int id) { return products[id]; }
+    @Override public int price(int id) { return price[id]; }
+    @Override public int totalPrice(int id) { return totalPrice[id]; }
+    @Override public int deliveryTime(int id) { return deliveryTime[id]; }
+    @Override public int sweetness(int id) { return sweetness[id]; }
+    @Override public double rating(int id) { return rating[id]; }
+    @Override public byte portion(int id) { return portion[id]; }
+    @Override public byte complexity(int id) { return complexity[id]; }
+    @Override public int idByTotalPrice(int rank) { return byTotalPrice[rank]; }
+    @Override public List<Product> getProducts() { return view; }
+
+    @Override
+    protected long keyEntry(int rank) {
+        long[] index = keys;
+        if (index == null) keys = index = keyIndex(this);
+        return index[rank];
+    }
+}
+
+// Mapped Segment - Zero-copy view of one category inside a memory-mapped catalog file
+class MappedSegment extends CatalogSegment {
+    private final ByteBuffer buffer;
+    private final CatalogFile.StringTable strings;
+    private final int first, size;
+    private final int priceAt, feeAt, deliveryTimeAt, sweetnessAt, sellerAt, nameAt, deliveryAt, ratingAt, portionAt, complexityAt;
+    private final int byTotalPriceAt, byKeyAt;
+    private volatile long[] keys;   // files before version 4 have no usable key index; built on the first key lookup
+
+    MappedSegment(String category, ByteBuffer buffer, CatalogFile.StringTable strings, int rowCount, int columnsAt,
+                  int first, int size, int byTotalPriceAt, int byKeyAt) {
+        super(category);
+        this.buffer = buffer;
+        this.strings = strings;
+        this.first = first;
+        this.size = size;
+        // Column layout is fixed by CatalogFile: seven int columns, one double column, two byte columns
+        int n = rowCount;
+        this.priceAt = columnsAt;
+        this.feeAt = priceAt + 4 * n;
+        this.deliveryTimeAt = feeAt + 4 * n;
+        this.sweetnessAt = deliveryTimeAt + 4 * n;
+        this.sellerAt = sweetnessAt + 4 * n;
+        this.nameAt = sellerAt + 4 * n;
+        this.deliveryAt = nameAt + 4 * n;
+        this.ratingAt = deliveryAt + 4 * n;
+        this.portionAt = ratingAt + 8 * n;
+        this.complexityAt = portionAt + n;
+        this.byTotalPriceAt = byTotalPriceAt;
+        this.byKeyAt = byKeyAt;
+    }
+
+    private int intColumn(int base, int id) { return buffer.getInt(base + 4 * (first + id)); }
+
+    // Decoded on demand; nothing is cached so the heap footprint does not grow with the catalog
+    @Override
+    public Product product(int id) {
+        return new Product(strings.get(intColumn(sellerAt, id)), strings.get(intColumn(nameAt, id)), price(id), rating(id),
+                           deliveryTime(id), strings.get(intColumn(deliveryAt, id)), getCategory(), sweetness(id),
+                           Portion.VALUES[portion(id)], Complexity.VALUES[complexity(id)]);
+    }
+
+    @Override public int size() { return size; }
+    @Override public int price(int id) { return intColumn(priceAt, id); }
+    @Override public int totalPrice(int id) { return intColumn(priceAt, id) + intColumn(feeAt, id); }
+    @Override public int deliveryTime(int id) { return intColumn(deliveryTimeAt, id); }
+    @Override public int sweetness(int id) { return intColumn(sweetnessAt, id); }
+    @Override public double rating(int id) { return buffer.getDouble(ratingAt + 8 * (first + id)); }
+    @Override public byte portion(int id) { return buffer.get(portionAt + first + id); }
+    @Override public byte complexity(int id) { return buffer.get(complexityAt + first + id); }
+    @Override public int idByTotalPrice(int rank) { return buffer.getInt(byTotalPriceAt + 4 * rank); }
+
+    @Override
+    protected long keyEntry(int rank) {
+        if (byKeyAt >= 0) return buffer.getLong(byKeyAt + 8 * rank);
+        long[] index = keys;
+        if (index == null) keys = index = keyIndex(this);
+        return index[rank];
+    }
+}
+
+// Overlay Segment - A base segment plus the offers changed since the base was built
+//
+// Replaced and deleted base rows stay in place behind a tombstone bit, and new or updated offers live in a
+// small delta segment whose rows follow the base rows. An update therefore copies the tombstone bits and the
+// delta, never the base; ProductDAO compacts the overlay into one segment once the changes outgrow the base.
+final class OverlaySegment extends CatalogSegment {
+    private final CatalogSegment base;
+    private final long[] dead;   // tombstone bit per base row
+    private final int deadCount, baseSize;
+    private final ArraySegment delta;
+    private volatile int[] live;   // built on first use, as are the merged sort orders
+    private volatile int[] byTotalPrice;
+
+    OverlaySegment(CatalogSegment base, long[] dead, int deadCount, ArraySegment delta) {
+        super(base.getCategory());
+        this.base = base;
+        this.dead = dead;
+        this.deadCount = deadCount;
+        this.baseSize = base.size();
+        this.delta = delta;
+    }
+
+    CatalogSegment base() { return base; }
+    long[] dead() { return dead; }
+    int deadCount() { return deadCount; }
+    ArraySegment delta() { return delta; }
+
+    @Override public int size() { return baseSize + delta.size(); }
+    @Override public int liveCount() { return baseSize - deadCount + delta.size(); }
+    @Override public boolean isLive(int id) { return id >= baseSize || (dead[id >>> 6] & (1L << id)) == 0; }
+
+    @Override public Product product(int id) { return id < baseSize ? base.product(id) : delta.product(id - baseSize); }
+    @Override public int price(int id) { return id < baseSize ? base.price(id) : delta.price(id - baseSize); }
+    @Override public int totalPrice(int id) { return id < baseSize ? base.totalPrice(id) : delta.totalPrice(id - baseSize); }
+    @Override public int deliveryTime(int id) { return id < baseSize ? base.deliveryTime(id) : delta.deliveryTime(id - baseSize); }
+    @Override public int sweetness(int id) { return id < baseSize ? base.sweetness(id) : delta.sweetness(id - baseSize); }
+    @Override public double rating(int id) { return id < baseSize ? base.rating(id) : delta.rating(id - baseSize); }
+    @Override public byte portion(int id) { return id < baseSize ? base.portion(id) : delta.portion(id - baseSize); }
+    @Override public byte complexity(int id) { return id < baseSize ? base.complexity(id) : delta.complexity(id - baseSize); }
+
+    @Override
+    public int score(int id, int criteria, ScoringProfile profile) {
+        return id < baseSize ? base.score(id, criteria, profile) : delta.score(id - baseSize, criteria, profile);
+    }
+
+    @Override
+    public int rowOf(String key) {
+        int row = delta.rowOf(key);
+        if (row >= 0) return baseSize + row;
+        row = base.rowOf(key);
+        return row >= 0 && isLive(row) ? row : -1;
+    }
+
+    @Override
+    protected long keyEntry(int rank) {
+        throw new UnsupportedOperationException("Overlays look keys up in their base and delta");
+    }
+
+    // Counts tombstoned rows too, matching idByTotalPrice below
+    @Override public int countTotalPriceAtMost(int max) { return base.countTotalPriceAtMost(max) + delta.countTotalPriceAtMost(max); }
+
+    @Override
+    public int[] rowsWithTotalPriceAtMost(int max) {
+        int[] fromBase = base.rowsWithTotalPriceAtMost(max), fromDelta = delta.rowsWithTotalPriceAtMost(max);
+        int[] rows = new int[fromBase.length + fromDelta.length];
+        int n = 0;
+        for (int row : fromBase) {
+            if (isLive(row)) rows[n++] = row;
+        }
+        for (int row : fromDelta) rows[n++] = baseSize + row;
+        return Arrays.copyOf(rows, n);
+    }
+
+    // Shared; callers must not modify it
+    @Override
+    public int[] liveRows() {
+        int[] rows = live;
+        if (rows == null) live = rows = super.liveRows();
+        return rows;
+    }
+
+    // Tombstoned base rows still count, as in an index awaiting a merge; compaction drops them
+    @Override
+    public TextIndex.Stats textStats(List<String> words) { return base.textStats(words).plus(delta.textStats(words)); }
+
+    // Both parts score with the overlay's statistics, so a row moved to the small delta keeps its relevance
+    @Override
+    public TextIndex.Hits textSearch(List<String> words, TextIndex.Stats stats) {
+        TextIndex.Hits fromBase = base.textSearch(words, stats), fromDelta = delta.textSearch(words, stats);
+        int[] docs = new int[fromBase.size() + fromDelta.size()];
+        float[] scores = new float[docs.length];
+        int n = 0;
+        for (int i = 0; i < fromBase.size(); i++) {
+            if (!isLive(fromBase.doc(i))) continue;
+            docs[n] = fromBase.doc(i);
+            scores[n++] = fromBase.score(i);
+        }
+        for (int i = 0; i < fromDelta.size(); i++) {
+            docs[n] = baseSize + fromDelta.doc(i);
+            scores[n++] = fromDelta.score(i);
+        }
+        return new TextIndex.Hits(docs, scores, n);
+    }
+
+    // Rank lookups merge the base and delta orders once; searches use the count and rowsWithTotalPriceAtMost instead.
+    // Ties put base rows first, as in catalog order.
+    @Override
+    public int idByTotalPrice(int rank) {
+        int[] ids = byTotalPrice;
+        if (ids == null) {
+            ids = new int[size()];
+            int i = 0, j = 0;
+            for (int n = 0; n < ids.length; n++) {
+                int a = i < baseSize ? base.idByTotalPrice(i) : -1;
+                int b = j < delta.size() ? baseSize + delta.idByTotalPrice(j) : -1;
+                boolean takeBase = b < 0 || (a >= 0 && totalPrice(a) <= totalPrice(b));
+                ids[n] = takeBase ? a : b;
+                if (takeBase) i++; else j++;
+            }
+            byTotalPrice = ids;
+        }
+        return ids[rank];
+    }
+
+    @Override
+    public List<Product> getProducts() {
+        int[] rows = liveRows();
+        return new AbstractList<Product>() {
+            @Override public Product get(int index) { return product(rows[index]); }
+            @Override public int size() { return rows.length; }
+        };
+    }
+}
+
+// Text Index - Inverted index over one segment's offer name, seller and category tokens
+//
+// Postings are (doc gap, term frequency) varint pairs packed into one byte array, so a posting usually
+// costs two bytes. The vocabulary is a sorted String[]; a trigram index over it finds spelling variants
+// within a small edit distance, and sorted order gives prefix matches for half-typed words.
+final class TextIndex {
+    private static final float K1 = 1.2f, B = 0.75f;
+    private static final int MAX_EXPANSIONS = 64;   // variant terms per query word
+    private static final int COMMON_MIN_DOCS = 10_000;   // below this every word's postings are cheap to read
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "and", "the", "of", "for", "with", "to", "in", "on", "or", "me", "i", "want", "need",
+        "some", "please", "yang", "dan", "mau", "ingin", "beli", "untuk", "dengan"));
+
+    private final int docCount;
+    private final String[] terms;        // sorted vocabulary; term id = position
+    private final int[] docFreq;
+    private final int[] postingsAt;      // terms.length + 1 offsets into postings
+    private final byte[] postings;
+    private final byte[] docLength;      // tokens per offer, capped at 255
+    private final long totalLength;
+    private final long[] grams;          // sorted distinct trigrams of "^term$"
+    private final int[] gramTermsAt;     // grams.length + 1 offsets into gramTerms
+    private final int[] gramTerms;       // term ids per trigram, ascending
+
+    private TextIndex(int docCount, String[] terms, int[] docFreq, int[] postingsAt, byte[] postings,
+                      byte[] docLength, long totalLength) {
+        this.docCount = docCount;
+        this.terms = terms;
+        this.docFreq = docFreq;
+        this.postingsAt = postingsAt;
+        this.postings = postings;
+        this.docLength = docLength;
+        this.totalLength = totalLength;
+
+        // Two passes: count the terms per distinct trigram, then fill them in term order
+        Map<Long, Integer> counts = new HashMap<>();
+        long[][] termGrams = new long[terms.length][];
+        for (int t = 0; t < terms.length; t++) {
+            termGrams[t] = gramsOf(terms[t]);
+            for (long g : termGrams[t]) counts.merge(g, 1, Integer::sum);
+        }
+        grams = new long[counts.size()];
+        int i = 0;
+        for (long g : counts.keySet()) grams[i++] = g;
+        Arrays.sort(grams);
+        gramTermsAt = new int[grams.length + 1];
+        for (int k = 0; k < grams.length; k++) gramTermsAt[k + 1] = gramTermsAt[k] + counts.get(grams[k]);
+        gramTerms = new int[gramTermsAt[grams.length]];
+        int[] cursor = Arrays.copyOf(gramTermsAt, grams.length);
+        for (int t = 0; t < terms.length; t++) {
+            for (long g : termGrams[t]) gramTerms[cursor[Arrays.binarySearch(grams, g)]++] = t;
+        }
+    }
+
+    static TextIndex build(CatalogSegment segment) {
+        int n = segment.size();
+        Map<String, PostingWriter> writers = new HashMap<>();
+        Map<String, Integer> tf = new HashMap<>();
+        byte[] docLength = new byte[n];
+        long totalLength = 0;
+        List<String> categoryTokens = tokenize(segment.getCategory());
+        for (int doc = 0; doc < n; doc++) {
+            Product p = segment.product(doc);
+            tf.clear();
+            int length = 0;
+            for (List<String> tokens : Arrays.asList(tokenize(p.getName()), tokenize(p.getSeller()), categoryTokens)) {
+                for (String token : tokens) tf.merge(token, 1, Integer::sum);
+                length += tokens.size();
+            }
+            docLength[doc] = (byte) Math.min(length, 255);
+            totalLength += length;
+            for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                writers.computeIfAbsent(e.getKey(), k -> new PostingWriter()).add(doc, e.getValue());
+            }
+        }
+
+        String[] terms = writers.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] docFreq = new int[terms.length];
+        int[] postingsAt = new int[terms.length + 1];
+        for (int t = 0; t < terms.length; t++) {
+            PostingWriter w = writers.get(terms[t]);
+            docFreq[t] = w.docFreq;
+            postingsAt[t + 1] = postingsAt[t] + w.length;
+        }
+        byte[] postings = new byte[postingsAt[terms.length]];
+        for (int t = 0; t < terms.length; t++) {
+            PostingWriter w = writers.get(terms[t]);
+            System.arraycopy(w.bytes, 0, postings, postingsAt[t], w.length);
+        }
+        return new TextIndex(n, terms, docFreq, postingsAt, postings, docLength, totalLength);
+    }
+
+    // Lower-cased runs of letters and digits, without one-letter tokens and stop words
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) start = i;
+            if (!word && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (token.length() > 1 && !STOP_WORDS.contains(token)) tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // The query's words minus dictionary terms, which already steer criteria and category
+    static List<String> queryTerms(String query, KeywordDictionary dictionary) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            if (!dictionary.isTerm(token) && !terms.contains(token)) terms.add(token);
+        }
+        return terms;
+    }
+
+    /**
+     * Offers matching any of the words, ascending by row id, with their summed BM25 scores. Each word
+     * matches its exact term, terms it prefixes, and terms within one edit (two for words of seven or
+     * more letters, none for words with digits); variants count for less than exact hits and a row keeps its best variant per word.
+     * In large segments, words found in at least half the offers add almost nothing to BM25, so their
+     * postings are only read when no rarer word matched; a lookup then costs what the selective words cost.
+     */
+    public Hits search(List<String> words) {
+        List<Map<Integer, Float>> variants = expandAll(words);
+        return searchVariants(variants, statsOf(variants));
+    }
+
+    // Scores with statistics covering more than this index (see Stats), so its hits rank alongside the others'
+    public Hits search(List<String> words, Stats stats) {
+        stats.checkWords(words.size());
+        return searchVariants(expandAll(words), stats);
+    }
+
+    public Stats stats(List<String> words) {
+        return statsOf(expandAll(words));
+    }
+
+    private List<Map<Integer, Float>> expandAll(List<String> words) {
+        List<Map<Integer, Float>> variants = new ArrayList<>(words.size());
+        for (String word : words) variants.add(expand(word));
+        return variants;
+    }
+
+    private Stats statsOf(List<Map<Integer, Float>> variants) {
+        long[] wordDocFreq = new long[variants.size()];
+        Map<String, Integer> termDocFreq = new HashMap<>();
+        for (int w = 0; w < variants.size(); w++) {
+            for (int term : variants.get(w).keySet()) {
+                wordDocFreq[w] += docFreq[term];
+                termDocFreq.put(terms[term], docFreq[term]);
+            }
+        }
+        return new Stats(docCount, totalLength, wordDocFreq, termDocFreq);
+    }
+
+    // Which words are common is decided on the shared statistics, so every part reads the same words
+    private Hits searchVariants(List<Map<Integer, Float>> variants, Stats stats) {
+        List<Map<Integer, Float>> selective = new ArrayList<>(), common = new ArrayList<>();
+        for (int w = 0; w < variants.size(); w++) {
+            long df = stats.wordDocFreq[w];
+            if (df == 0) continue;
+            (stats.docCount >= COMMON_MIN_DOCS && 2 * df >= stats.docCount ? common : selective).add(variants.get(w));
+        }
+        Hits total = Hits.NONE;
+        for (Map<Integer, Float> word : selective.isEmpty() ? common : selective) {
+            Hits best = Hits.NONE;
+            for (Map.Entry<Integer, Float> e : word.entrySet()) {
+                best = Hits.merge(best, postings(e.getKey(), e.getValue(), stats), false);
+            }
+            total = Hits.merge(total, best, true);
+        }
+        return total;
+    }
+
+    // Term id -> weight: 1 for the exact term, 1 / (1 + distance) for typos, 0.5 for longer terms it prefixes
+    private Map<Integer, Float> expand(String word) {
+        Map<Integer, Float> weights = new HashMap<>();
+        int exact = Arrays.binarySearch(terms, word);
+        if (exact >= 0) weights.put(exact, 1f);
+
+        // Numbers are matched exactly: a "typo" in a size or model number names a different product
+        boolean numeric = word.chars().anyMatch(Character::isDigit);
+        int tolerance = numeric || word.length() <= 3 ? 0 : word.length() <= 6 ? 1 : 2;
+        if (tolerance > 0) {
+            // q-gram filter: an edit destroys at most three trigrams (four for an adjacent swap), so a variant shares the rest
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (long g : gramsOf(word)) {
+                int k = Arrays.binarySearch(grams, g);
+                if (k < 0) continue;
+                for (int j = gramTermsAt[k]; j < gramTermsAt[k + 1]; j++) shared.merge(gramTerms[j], 1, Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+                String term = terms[e.getKey()];
+                if (Math.abs(term.length() - word.length()) > tolerance) continue;
+                if (e.getValue() < Math.max(term.length(), word.length()) - 4 * tolerance) continue;
+                int distance = editDistance(word, term, tolerance);
+                if (distance > 0 && distance <= tolerance) weights.merge(e.getKey(), 1f / (1 + distance), Math::max);
+            }
+        }
+
+        if (word.length() >= 3) {
+            int from = exact >= 0 ? exact + 1 : -exact - 1;
+            for (int t = from; t < terms.length && terms[t].startsWith(word) && t - from < MAX_EXPANSIONS; t++) {
+                weights.merge(t, 0.5f, Math::max);
+            }
+        }
+        return weights;
+    }
+
+    private Hits postings(int term, float weight, Stats stats) {
+        int df = docFreq[term];
+        // A term added since the statistics were gathered elsewhere counts only its documents here
+        long sharedDf = stats.termDocFreq.getOrDefault(terms[term], df);
+        float idf = (float) Math.log(1 + (stats.docCount - sharedDf + 0.5) / (sharedDf + 0.5));
+        float avgDocLength = stats.avgDocLength();
+        int[] docs = new int[df];
+        float[] scores = new float[df];
+        int pos = postingsAt[term];
+        int doc = -1;
+        for (int i = 0; i < df; i++) {
+            int gap = 0, shift = 0, b;
+            do { b = postings[pos++]; gap |= (b & 0x7F) << shift; shift += 7; } while (b < 0);
+            int tf = 0;
+            shift = 0;
+            do { b = postings[pos++]; tf |= (b & 0x7F) << shift; shift += 7; } while (b < 0);
+            doc += gap;
+            float norm = K1 * (1 - B + B * (docLength[doc] & 0xFF) / avgDocLength);
+            docs[i] = doc;
+            scores[i] = weight * idf * tf * (K1 + 1) / (tf + norm);
+        }
+        return new Hits(docs, scores, df);
+    }
+
+    // Optimal string alignment distance (adjacent swaps count as one edit); returns limit + 1 once exceeded
+    static int editDistance(String a, String b, int limit) {
+        int[] prev2 = new int[b.length() + 1], prev = new int[b.length() + 1], cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev2; prev2 = prev; prev = cur; cur = t;
+        }
+        return Math.min(prev[b.length()], limit + 1);
+    }
+
+    // Distinct trigrams of "^word$", three 16-bit chars per long
+    private static long[] gramsOf(String word) {
+        String padded = "^" + word + "$";
+        long[] out = new long[padded.length() - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(out);
+        int n = 0;
+        for (int i = 0; i < out.length; i++) if (n == 0 || out[i] != out[n - 1]) out[n++] = out[i];
+        return Arrays.copyOf(out, n);
+    }
+
+    public int size() { return docCount; }
+    public int termCount() { return terms.length; }
+    public long bytes() { return postings.length + docLength.length + 4L * (postingsAt.length + docFreq.length + gramTerms.length) + 8L * grams.length; }
+
+    private static final class PostingWriter {
+        byte[] bytes = new byte[8];
+        int length, docFreq, lastDoc = -1;
+
+        void add(int doc, int tf) {
+            if (length + 10 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            writeVarint(doc - lastDoc);
+            writeVarint(tf);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+
+    // BM25 collection statistics of one query: document count, total length, and document frequency per query
+    // word (summed over its variants) and per variant term. Parts of one collection add theirs up with plus().
+    static final class Stats {
+        private final long docCount, totalLength;
+        private final long[] wordDocFreq;
+        private final Map<String, Integer> termDocFreq;
+
+        Stats(long docCount, long totalLength, long[] wordDocFreq, Map<String, Integer> termDocFreq) {
+            this.docCount = docCount;
+            this.totalLength = totalLength;
+            this.wordDocFreq = wordDocFreq;
+            this.termDocFreq = termDocFreq;
+        }
+
+        // Both must describe the same query words
+        Stats plus(Stats other) {
+            other.checkWords(wordDocFreq.length);
+            long[] words = wordDocFreq.clone();
+            for (int w = 0; w < words.length; w++) words[w] += other.wordDocFreq[w];
+            Map<String, Integer> terms = new HashMap<>(termDocFreq);
+            other.termDocFreq.forEach((term, df) -> terms.merge(term, df, Integer::sum));
+            return new Stats(docCount + other.docCount, totalLength + other.totalLength, words, terms);
+        }
+
+        float avgDocLength() { return docCount == 0 ? 1 : (float) totalLength / docCount; }
+
+        void checkWords(int words) {
+            if (wordDocFreq.length != words) {
+                throw new IllegalArgumentException("Statistics cover " + wordDocFreq.length + " query words, not " + words);
+            }
+        }
+
+        // {"category":{"docs":n,"length":n,"words":[df,...],"terms":{"term":df,...}},...} for a coordinator's pre-pass
+        static String toJson(Map<String, Stats> byCategory) {
+            StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<String, Stats> c : byCategory.entrySet()) {
+                Stats stats = c.getValue();
+                if (sb.length() > 1) sb.append(',');
+                sb.append(Json.quote(c.getKey())).append(":{\"docs\":").append(stats.docCount)
+                  .append(",\"length\":").append(stats.totalLength).append(",\"words\":[");
+                for (int w = 0; w < stats.wordDocFreq.length; w++) sb.append(w > 0 ? "," : "").append(stats.wordDocFreq[w]);
+                sb.append("],\"terms\":{");
+                boolean first = true;
+                for (Map.Entry<String, Integer> t : stats.termDocFreq.entrySet()) {
+                    sb.append(first ? "" : ",").append(Json.quote(t.getKey())).append(':').append(t.getValue());
+                    first = false;
+                }
+                sb.append("}}");
+            }
+            return sb.append('}').toString();
+        }
+
+        static Map<String, Stats> parse(String json) {
+            Map<String, Stats> byCategory = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<String, Object> c : Json.parseObject(json).entrySet()) {
+                    Map<?, ?> o = (Map<?, ?>) c.getValue();
+                    List<?> words = (List<?>) o.get("words");
+                    long[] wordDocFreq = new long[words.size()];
+                    for (int w = 0; w < wordDocFreq.length; w++) wordDocFreq[w] = ((Number) words.get(w)).longValue();
+                    Map<String, Integer> terms = new HashMap<>();
+                    for (Map.Entry<?, ?> t : ((Map<?, ?>) o.get("terms")).entrySet()) {
+                        terms.put((String) t.getKey(), ((Number) t.getValue()).intValue());
+                    }
+                    byCategory.put(c.getKey(), new Stats(((Number) o.get("docs")).longValue(), ((Number) o.get("length")).longValue(),
+                                                         wordDocFreq, terms));
+                }
+            } catch (ClassCastException | NullPointerException e) {
+                throw new IllegalArgumentException("Malformed text statistics: " + json);
+            }
+            return byCategory;
+        }
+    }
+
+    // Row ids in ascending order with their relevance
+    static final class Hits {
+        static final Hits NONE = new Hits(new int[0], new float[0], 0);
+
+        private final int[] docs;
+        private final float[] scores;
+        private final int size;
+
+        Hits(int[] docs, float[] scores, int size) {
+            this.docs = docs;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        public int size() { return size; }
+        public int doc(int i) { return docs[i]; }
+        public float score(int i) { return scores[i]; }
+
+        // Union of two row-ordered lists; a row in both gets the sum or the larger of its scores
+        static Hits merge(Hits a, Hits b, boolean sum) {
+            if (a.size == 0) return b;
+            if (b.size == 0) return a;
+            int[] docs = new int[a.size + b.size];
+            float[] scores = new float[docs.length];
+            int i = 0, j = 0, n = 0;
+            while (i < a.size || j < b.size) {
+                int da = i < a.size ? a.docs[i] : Integer.MAX_VALUE;
+                int db = j < b.size ? b.docs[j] : Integer.MAX_VALUE;
+                if (da < db) {
+                    docs[n] = da;
+                    scores[n++] = a.scores[i++];
+                } else if (db < da) {
+                    docs[n] = db;
+                    scores[n++] = b.scores[j++];
+                } else {
+                    docs[n] = da;
+                    scores[n++] = sum ? a.scores[i++] + b.scores[j++] : Math.max(a.scores[i++], b.scores[j++]);
+                }
+            }
+            return new Hits(docs, scores, n);
+        }
+    }
+}
+
+// Catalog File - Compact binary catalog: fixed-width columns, per-category range indexes and a string table
+//
+// Layout (big-endian, int offsets, so a file is limited to 2 GB):
+//   header      magic, version, rowCount, categoryCount, stringCount, categoryDirAt, stringIndexAt, stringDataAt, columnsAt
+//   categories  per category: nameRef, firstRow, rowCount, byTotalPriceAt, byKeyAt
+//   columns     price, deliveryFee, deliveryTime, sweetness, sellerRef, nameRef, deliveryRef (int[rowCount] each),
+//               rating (double[rowCount]), portion, complexity (byte[rowCount] each)
+//   indexes     per category: row ids ordered by total price, then the key index
+//               (long[rowCount] of key hash << 32 | row, sorted)
+// Versions 1 and 2 also stored price and delivery-time orders, which open() skips. Files before version 4 hash
+// keys of an older format, so their key index is ignored and rebuilt in memory.
+//   strings     int[stringCount + 1] offsets into UTF-8 data
+// Rows are grouped by category, so a category is a contiguous row range.
+final class CatalogFile {
+    static final int MAGIC = 0x544E4452;   // "TNDR"
+    static final int VERSION = 4;
+    private static final int HEADER_BYTES = 9 * 4;
+    private static final int CATEGORY_BYTES = 5 * 4;
+
+    private CatalogFile() {}
+
+    static final class StringTable {
+        private final ByteBuffer buffer;
+        private final int indexAt, dataAt;
+
+        StringTable(ByteBuffer buffer, int indexAt, int dataAt) {
+            this.buffer = buffer;
+            this.indexAt = indexAt;
+            this.dataAt = dataAt;
+        }
+
+        String get(int ref) {
+            int start = buffer.getInt(indexAt + 4 * ref);
+            int end = buffer.getInt(indexAt + 4 * (ref + 1));
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(dataAt + start + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Maps the file read-only; only the header and category directory are read up front
+    public static Map<String, CatalogSegment> open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Catalog larger than 2 GB: " + file);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a tender catalog: " + file);
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported catalog version " + version + ": " + file);
+        int entryBytes = version == 1 ? 6 * 4 : version == 2 ? 7 * 4 : CATEGORY_BYTES;
+        int rowCount = buffer.getInt(8);
+        int categoryCount = buffer.getInt(12);
+        int categoryDirAt = buffer.getInt(20);
+        StringTable strings = new StringTable(buffer, buffer.getInt(24), buffer.getInt(28));
+        int columnsAt = buffer.getInt(32);
+
+        Map<String, CatalogSegment> segments = new HashMap<>();
+        for (int c = 0; c < categoryCount; c++) {
+            int at = categoryDirAt + c * entryBytes;
+            String name = strings.get(buffer.getInt(at));
+            int byTotalPriceAt = buffer.getInt(at + (version < 3 ? 16 : 12));
+            int byKeyAt = version < 4 ? -1 : buffer.getInt(at + 16);
+            segments.put(name, new MappedSegment(name, buffer, strings, rowCount, columnsAt, buffer.getInt(at + 4), buffer.getInt(at + 8),
+                byTotalPriceAt, byKeyAt));
+        }
+        return segments;
+    }
+
+    public static void write(List<Product> products, Path file) throws IOException {
+        Map<String, List<Product>> grouped = new LinkedHashMap<>();
+        for (Product p : products) grouped.computeIfAbsent(p.getCategory(), k -> new ArrayList<>()).add(p);
+
+        Map<String, Integer> stringRefs = new HashMap<>();
+        List<byte[]> stringData = new ArrayList<>();
+        int n = products.size();
+        int categoryCount = grouped.size();
+        int categoryDirAt = HEADER_BYTES;
+        int columnsAt = categoryDirAt + categoryCount * CATEGORY_BYTES;
+        int indexesAt = columnsAt + n * (7 * 4 + 8 + 2);
+
+        // Rows in category order, plus each category's directory entry
+        List<Product> rows = new ArrayList<>(n);
+        int[][] directory = new int[categoryCount][];
+        List<int[]> indexes = new ArrayList<>();
+        List<long[]> keyIndexes = new ArrayList<>();
+        int c = 0, indexAt = indexesAt;
+        for (Map.Entry<String, List<Product>> e : grouped.entrySet()) {
+            ArraySegment segment = new ArraySegment(e.getKey(), e.getValue());
+            int size = segment.size();
+            directory[c++] = new int[] {ref(e.getKey(), stringRefs, stringData), rows.size(), size, indexAt, indexAt + 4 * size};
+            if ((long) indexAt + 12L * size > Integer.MAX_VALUE) throw new IOException("Catalog would exceed 2 GB");
+            indexAt += 12 * size;
+            int[] byTotal = new int[size];
+            for (int i = 0; i < size; i++) byTotal[i] = segment.idByTotalPrice(i);
+            indexes.add(byTotal);
+            keyIndexes.add(CatalogSegment.keyIndex(segment));
+            rows.addAll(e.getValue());
+        }
+        int[] sellers = new int[n], names = new int[n], deliveries = new int[n];
+        for (int i = 0; i < n; i++) {
+            Product p = rows.get(i);
+            sellers[i] = ref(p.getSeller(), stringRefs, stringData);
+            names[i] = ref(p.getName(), stringRefs, stringData);
+            deliveries[i] = ref(p.getDelivery(), stringRefs, stringData);
+        }
+        long stringBytes = 0;
+        for (byte[] b : stringData) stringBytes += b.length;
+        int stringIndexAt = indexAt;
+        long stringDataAt = (long) stringIndexAt + 4L * (stringData.size() + 1);
+        if (stringDataAt + stringBytes > Integer.MAX_VALUE) throw new IOException("Catalog would exceed 2 GB");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            int[] header = {MAGIC, VERSION, n, categoryCount, stringData.size(), categoryDirAt, stringIndexAt, (int) stringDataAt, columnsAt};
+            for (int v : header) out.writeInt(v);
+            for (int[] entry : directory) {
+                for (int v : entry) out.writeInt(v);
+            }
+            for (Product p : rows) out.writeInt(p.getPrice());
+            for (Product p : rows) out.writeInt(p.getDeliveryFee());
+            for (Product p : rows) out.writeInt(p.getDeliveryTime());
+            for (Product p : rows) out.writeInt(p.getSweetness());
+            for (int v : sellers) out.writeInt(v);
+            for (int v : names) out.writeInt(v);
+            for (int v : deliveries) out.writeInt(v);
+            for (Product p : rows) out.writeDouble(p.getRating());
+            for (Product p : rows) out.writeByte(p.getPortion().ordinal());
+            for (Product p : rows) out.writeByte(p.getComplexity().ordinal());
+            for (int k = 0; k < keyIndexes.size(); k++) {
+                for (int v : indexes.get(k)) out.writeInt(v);
+                for (long v : keyIndexes.get(k)) out.writeLong(v);
+            }
+            int offset = 0;
+            for (byte[] b : stringData) {
+                out.writeInt(offset);
+                offset += b.length;
+            }
+            out.writeInt(offset);
+            for (byte[] b : stringData) out.write(b);
+        }
+    }
+
+    private static int ref(String value, Map<String, Integer> refs, List<byte[]> data) {
+        Integer ref = refs.get(value);
+        if (ref == null) {
+            ref = data.size();
+            refs.put(value, ref);
+            data.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return ref;
+    }
+}
+
+// JSON - Minimal reader/writer for the flat JSON documents the tools exchange
+final class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) { this.text = text; }
+
+    // Objects become LinkedHashMap, arrays ArrayList, numbers Long or Double
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpace();
+        if (json.pos != text.length()) throw json.error("Trailing characters");
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) throw new IllegalArgumentException("Expected a JSON object: " + text);
+        return (Map<String, Object>) value;
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= text.length()) throw error("Unexpected end");
+        char c = text.charAt(pos);
+        if (c == '{') return object();
+        if (c == '[') return array();
+        if (c == '"') return string();
+        if (text.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+        if (text.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+        if (text.startsWith("null", pos)) { pos += 4; return null; }
+        return number();
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek() == '}') { pos++; return map; }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') throw error("Expected key");
+            String key = string();
+            skipSpace();
+            expect(':');
+            map.put(key, value());
+            skipSpace();
+            if (peek() == ',') { pos++; continue; }
+            expect('}');
+            return map;
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek() == ']') { pos++; return list; }
+        while (true) {
+            list.add(value());
+            skipSpace();
+            if (peek() == ',') { pos++; continue; }
+            expect(']');
+            return list;
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= text.length()) throw error("Unterminated string");
+            char c = text.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') { sb.append(c); continue; }
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u': sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16)); pos += 4; break;
+                default: sb.append(e);
+            }
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+        String num = text.substring(start, pos);
+        if (num.isEmpty()) throw error("Unexpected character");
+        if (num.indexOf('.') < 0 && num.indexOf('e') < 0 && num.indexOf('E') < 0) return Long.parseLong(num);
+        return Double.parseDouble(num);
+    }
+
+    private char peek() { return pos < text.length() ? text.charAt(pos) : '\0'; }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c)); else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
+
+// Catalog Importer - Converts CSV or JSONL offers into a binary catalog file
+//   java CatalogImporter offers.csv|offers.jsonl catalog.bin
+// CSV needs a header row; both formats use the fields
+//   seller, name, price, rating, deliveryTime, delivery, category, sweetness, portion, complexity
+class CatalogImporter {
+    static final String[] FIELDS = {"seller", "name", "price", "rating", "deliveryTime", "delivery", "category", "sweetness", "portion", "complexity"};
+
+    // With a shard count, writes one catalog per shard (catalog-0.bin, catalog-1.bin, ...) for separate nodes
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: java CatalogImporter <offers.csv|offers.jsonl> <catalog.bin> [shards [category|seller]]");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        List<Product> products = read(Paths.get(args[0]));
+        if (args.length == 2) {
+            CatalogFile.write(products, Paths.get(args[1]));
+        } else {
+            ShardKey key = args.length > 3 ? ShardKey.of(args[3]) : ShardKey.SELLER;
+            List<List<Product>> shards = key.partition(products, Integer.parseInt(args[2]));
+            for (int i = 0; i < shards.size(); i++) CatalogFile.write(shards.get(i), shardPath(Paths.get(args[1]), i));
+        }
+        String target = args.length == 2 ? args[1] : args[2] + " shard catalogs like " + shardPath(Paths.get(args[1]), 0);
+        System.out.printf("Imported %,d offers into %s in %d ms%n", products.size(), target, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    static Path shardPath(Path catalog, int shard) {
+        String name = catalog.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String shardName = dot < 0 ? name + "-" + shard : name.substring(0, dot) + "-" + shard + name.substring(dot);
+        return catalog.resolveSibling(shardName);
+    }
+
+    public static List<Product> read(Path input) throws IOException {
+        boolean jsonl = input.getFileName().toString().toLowerCase().endsWith(".jsonl");
+        List<Product> products = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            int[] columns = null;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                try {
+                    if (jsonl) {
+                        products.add(fromJson(Json.parseObject(line)));
+                    } else if (columns == null) {
+                        columns = headerColumns(splitCsv(line));
+                    } else {
+                        products.add(fromCsv(splitCsv(line), columns));
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException(input + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return products;
+    }
+
+    static Product fromJson(Map<String, Object> o) {
+        String[] v = new String[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            Object value = o.get(FIELDS[i]);
+            if (value == null) throw new IllegalArgumentException("Missing field " + FIELDS[i]);
+            v[i] = value.toString();
+        }
+        return build(v);
+    }
+
+    private static int[] headerColumns(List<String> header) {
+        int[] columns = new int[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            columns[i] = header.indexOf(FIELDS[i]);
+            if (columns[i] < 0) throw new IllegalArgumentException("Missing CSV column " + FIELDS[i]);
+        }
+        return columns;
+    }
+
+    private static Product fromCsv(List<String> cells, int[] columns) {
+        String[] v = new String[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) v[i] = cells.get(columns[i]);
+        return build(v);
+    }
+
+    private static Product build(String[] v) {
+        return new Product(v[0], v[1], (int) Double.parseDouble(v[2]), Double.parseDouble(v[3]), (int) Double.parseDouble(v[4]),
+                           v[5], v[6], (int) Double.parseDouble(v[7]), v[8], v[9]);
+    }
+
+    // RFC 4180-style split: quoted cells may contain commas and doubled quotes
+    static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') { cell.append('"'); i++; }
+                else if (c == '"') quoted = false;
+                else cell.append(c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString().trim());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString().trim());
+        return cells;
+    }
+}
+
+// Data Access Object - Manages product database
+class ProductDAO {
+    // Readers take one volatile read and then work on an immutable snapshot; writers swap in a new one
+    private volatile Snapshot snapshot;
+
+    // An overlay is compacted once its delta rows plus tombstones exceed this share of its base (or the minimum)
+    private static final int COMPACT_DIVISOR = 32;
+    private static final int COMPACT_MIN_ROWS = 4096;
+
+    // Builds text indexes in the background for catalogs that index eagerly
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "text-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Compacts oversized overlays off the writer lock; a queued task whose base was already compacted does nothing
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalog-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Mapped catalogs compact into new catalog files here, so their offers stay off the heap; null for heap catalogs
+    private final Path spillDir;
+
+    // -Dtender.textIndex=eager builds every segment's text index in the background as soon as it is published;
+    // lazy leaves it to the segment's first text search, which then pays the build (seconds at a million offers).
+    // Heap catalogs default to eager. Mapped catalogs default to lazy, so opening one stays zero-copy and catalogs
+    // that are never text-searched never hold an index.
+    private final boolean eagerTextIndex;
+
+    // Opens the catalog file named by -Dtender.catalog, or falls back to the built-in offers
+    public ProductDAO() {
+        String file = System.getProperty("tender.catalog");
+        if (file == null) {
+            spillDir = null;
+            eagerTextIndex = eagerTextIndex(false);
+            setSegments(buildSegments(initializeProducts()));
+        } else {
+            spillDir = Paths.get(file).toAbsolutePath().getParent();
+            eagerTextIndex = eagerTextIndex(true);
+            try {
+                setSegments(CatalogFile.open(Paths.get(file)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open catalog " + file, e);
+            }
+        }
+    }
+
+    public ProductDAO(Path catalogFile) throws IOException {
+        spillDir = catalogFile.toAbsolutePath().getParent();
+        eagerTextIndex = eagerTextIndex(true);
+        setSegments(CatalogFile.open(catalogFile));
+    }
+
+    public ProductDAO(List<Product> products) {
+        spillDir = null;
+        eagerTextIndex = eagerTextIndex(false);
+        setSegments(buildSegments(products));
+    }
+
+    private static boolean eagerTextIndex(boolean mapped) {
+        String mode = System.getProperty("tender.textIndex", mapped ? "lazy" : "eager");
+        if (!mode.equals("eager") && !mode.equals("lazy")) throw new IllegalArgumentException("tender.textIndex must be eager or lazy: " + mode);
+        return mode.equals("eager");
+    }
+
+    private void setSegments(Map<String, CatalogSegment> segments) {
+        this.snapshot = new Snapshot(segments, 0);
+        if (eagerTextIndex) {
+            for (CatalogSegment segment : snapshot.getSegments()) segment.buildTextIndex(INDEXER);
+        }
+    }
+
+    // An overlay's delta is indexed with its base: eagerly, or once a text search has indexed the base
+    private void indexInBackground(CatalogSegment segment) {
+        if (segment instanceof OverlaySegment) {
+            OverlaySegment overlay = (OverlaySegment) segment;
+            if (eagerTextIndex || overlay.base().isTextIndexed()) overlay.delta().buildTextIndex(INDEXER);
+        } else if (eagerTextIndex) {
+            segment.buildTextIndex(INDEXER);
+        }
+    }
+
+    // Immutable view of the catalog at one version
+    static final class Snapshot {
+        private final Map<String, CatalogSegment> segments;
+        private final List<CatalogSegment> ordered;
+        private final long version;
+        private final int size;
+
+        Snapshot(Map<String, CatalogSegment> segments, long version) {
+            this.segments = Collections.unmodifiableMap(segments);
+            List<CatalogSegment> sorted = new ArrayList<>(segments.values());
+            sorted.sort(Comparator.comparing(CatalogSegment::getCategory));
+            this.ordered = Collections.unmodifiableList(sorted);
+            this.version = version;
+            int total = 0;
+            for (CatalogSegment segment : segments.values()) total += segment.liveCount();
+            this.size = total;
+        }
+
+        public CatalogSegment getSegment(String category) { return segments.get(category); }
+        public Set<String> getCategories() { return segments.keySet(); }
+        // Ordered by category name, so searches spanning every category visit them in a stable order
+        public List<CatalogSegment> getSegments() { return ordered; }
+        public long getVersion() { return version; }
+        public int size() { return size; }
+    }
+
+    /**
+     * Applies a batch of offer upserts (matched by Product.getKey()) and deletes by key.
+     * A touched category becomes an OverlaySegment: its base segment is shared, replaced and deleted
+     * rows are tombstoned, and the changed offers go to a small delta. Offers are found through the
+     * segments' key indexes, so no key is decoded up front. Untouched segments are shared with the
+     * previous snapshot, so running searches keep their snapshot and never block.
+     * Writers are serialized with each other. New text indexes are built as the catalog's text index mode
+     * says, and an overlay grown past its compaction threshold is compacted in the background (see compact).
+     */
+    public synchronized long applyUpdates(Collection<Product> upserts, Collection<String> deletedKeys) {
+        Snapshot current = snapshot;
+        Map<String, Edit> edits = new HashMap<>();
+        for (String key : deletedKeys) {
+            Edit owner = owner(key, current, edits);
+            if (owner != null) owner.remove(key);
+        }
+        for (Product p : upserts) {
+            Edit owner = owner(p.getKey(), current, edits);
+            if (owner != null && !owner.category.equals(p.getCategory())) owner.remove(p.getKey());
+            edits.computeIfAbsent(p.getCategory(), c -> new Edit(c, current.getSegment(c))).put(p);
+        }
+
+        Map<String, CatalogSegment> next = new HashMap<>(current.segments);
+        List<CatalogSegment> built = new ArrayList<>();
+        for (Edit edit : edits.values()) {
+            CatalogSegment segment = edit.build();
+            if (segment == null) next.remove(edit.category); else next.put(edit.category, segment);
+            if (segment != null) built.add(segment);
+        }
+        snapshot = new Snapshot(next, current.version + 1);
+        // A search reaching a segment before its index is done waits for it; an overlay reuses its base's index
+        for (CatalogSegment segment : built) {
+            indexInBackground(segment);
+            if (segment instanceof OverlaySegment) compactIfOversized((OverlaySegment) segment);
+        }
+        return current.version + 1;
+    }
+
+    private void compactIfOversized(OverlaySegment overlay) {
+        if (overlay.delta().size() + overlay.deadCount() > Math.max(COMPACT_MIN_ROWS, overlay.base().size() / COMPACT_DIVISOR)) {
+            COMPACTOR.execute(() -> compact(overlay));
+        }
+    }
+
+    /**
+     * Rewrites an overlay's live rows, in the overlay's row order, as one plain segment and swaps it in. Runs on
+     * the compactor thread, so writers never wait for it; writes that landed meanwhile are replayed onto the result
+     * (see rebase). Mapped catalogs compact into a new mapped file, heap catalogs into an ArraySegment. The text
+     * index is built before the swap when the overlay's base had one. The version is kept: no offer changed.
+     */
+    private void compact(OverlaySegment overlay) {
+        String category = overlay.getCategory();
+        if (!isCurrentOverlayOf(overlay.base(), snapshot.getSegment(category))) return;   // already compacted or dropped
+        CatalogSegment compacted;
+        try {
+            compacted = spillDir == null ? new ArraySegment(category, new ArrayList<>(overlay.getProducts())) : spill(overlay);
+        } catch (IOException | UncheckedIOException e) {
+            // The overlay keeps serving; the next write past the threshold tries again
+            System.err.println("ProductDAO: compaction of " + category + " failed: " + e);
+            return;
+        }
+        if (overlay.base().isTextIndexed()) compacted.textIndex();
+        OverlaySegment rebased = null;
+        synchronized (this) {
+            Snapshot current = snapshot;
+            CatalogSegment latest = current.getSegment(category);
+            if (!isCurrentOverlayOf(overlay.base(), latest)) return;
+            CatalogSegment swapped = latest == overlay ? compacted : rebase((OverlaySegment) latest, overlay, compacted);
+            Map<String, CatalogSegment> next = new HashMap<>(current.segments);
+            next.put(category, swapped);
+            snapshot = new Snapshot(next, current.version);
+            if (swapped instanceof OverlaySegment) rebased = (OverlaySegment) swapped;
+        }
+        if (rebased != null) {
+            indexInBackground(rebased);
+            compactIfOversized(rebased);
+        }
+    }
+
+    private static boolean isCurrentOverlayOf(CatalogSegment base, CatalogSegment segment) {
+        return segment instanceof OverlaySegment && ((OverlaySegment) segment).base() == base;
+    }
+
+    /**
+     * The writes that turned `overlay` into `latest`, replayed onto `compacted` (overlay's live rows in order).
+     * Writers only ever add tombstones over a base, so base rows tombstoned since map to compacted rows by counting
+     * the rows live in `overlay`. A delta offer is carried over when `latest` still holds the same instance.
+     */
+    static CatalogSegment rebase(OverlaySegment latest, OverlaySegment overlay, CatalogSegment compacted) {
+        long[] before = overlay.dead(), after = latest.dead();
+        long[] dead = new long[(compacted.size() + 63) >>> 6];
+        int deadCount = 0, liveBefore = 0;
+        for (int w = 0; w < before.length; w++) {
+            for (long added = after[w] & ~before[w]; added != 0; added &= added - 1) {
+                int bit = Long.numberOfTrailingZeros(added);
+                int row = liveBefore + Long.bitCount(~before[w] & ((1L << bit) - 1));
+                dead[row >>> 6] |= 1L << row;
+                deadCount++;
+            }
+            liveBefore += Long.bitCount(~before[w]);   // only the last word has bits past the base, and nothing follows it
+        }
+        ArraySegment oldDelta = overlay.delta(), newDelta = latest.delta();
+        int deltaAt = overlay.base().size() - overlay.deadCount();
+        for (int j = 0; j < oldDelta.size(); j++) {
+            Product p = oldDelta.product(j);
+            int row = newDelta.rowOf(p.getKey());
+            if (row >= 0 && newDelta.product(row) == p) continue;
+            dead[(deltaAt + j) >>> 6] |= 1L << (deltaAt + j);
+            deadCount++;
+        }
+        List<Product> added = new ArrayList<>();
+        for (Product p : newDelta.getProducts()) {
+            int row = oldDelta.rowOf(p.getKey());
+            if (row < 0 || oldDelta.product(row) != p) added.add(p);
+        }
+        if (added.isEmpty() && deadCount == 0) return compacted;
+        return new OverlaySegment(compacted, dead, deadCount, new ArraySegment(compacted.getCategory(), added));
+    }
+
+    // The file is deleted once mapped; the mapping stays valid until the segment is collected
+    private CatalogSegment spill(OverlaySegment overlay) throws IOException {
+        Path file = Files.createTempFile(spillDir, "compacted-", ".tndr");
+        try {
+            CatalogFile.write(overlay.getProducts(), file);
+            return CatalogFile.open(file).get(overlay.getCategory());
+        } finally {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();   // platforms that refuse to delete a mapped file
+            }
+        }
+    }
+
+    // Waits for the compactions queued so far, for callers that need a settled catalog
+    void awaitCompactions() throws InterruptedException {
+        try {
+            COMPACTOR.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // The edit of the category currently holding the key, or null; one key-index lookup per category
+    private static Edit owner(String key, Snapshot current, Map<String, Edit> edits) {
+        for (Edit edit : edits.values()) {
+            if (edit.contains(key)) return edit;
+        }
+        for (CatalogSegment segment : current.segments.values()) {
+            if (!edits.containsKey(segment.getCategory()) && segment.rowOf(key) >= 0) {
+                Edit edit = new Edit(segment.getCategory(), segment);
+                edits.put(edit.category, edit);
+                return edit;
+            }
+        }
+        return null;
+    }
+
+    // Pending changes to one category: tombstones over the base rows plus the delta offers by key
+    private static final class Edit {
+        final String category;
+        private final CatalogSegment base;
+        private final int baseSize;
+        private final long[] dead;
+        private int deadCount;
+        private final LinkedHashMap<String, Product> delta = new LinkedHashMap<>();
+        private ArraySegment unchangedDelta;   // reused while the batch adds nothing to the delta
+
+        Edit(String category, CatalogSegment segment) {
+            this.category = category;
+            if (segment instanceof OverlaySegment) {
+                OverlaySegment overlay = (OverlaySegment) segment;
+                base = overlay.base();
+                dead = overlay.dead().clone();
+                deadCount = overlay.deadCount();
+                unchangedDelta = overlay.delta();
+                for (Product p : unchangedDelta.getProducts()) delta.put(p.getKey(), p);
+            } else {
+                base = segment;
+                dead = new long[segment == null ? 0 : (segment.size() + 63) >>> 6];
+            }
+            baseSize = base == null ? 0 : base.size();
+        }
+
+        private int liveBaseRow(String key) {
+            int row = base == null ? -1 : base.rowOf(key);
+            return row >= 0 && (dead[row >>> 6] & (1L << row)) == 0 ? row : -1;
+        }
+
+        boolean contains(String key) { return delta.containsKey(key) || liveBaseRow(key) >= 0; }
+
+        void remove(String key) {
+            if (delta.remove(key) != null) {
+                unchangedDelta = null;
+                return;
+            }
+            int row = liveBaseRow(key);
+            if (row < 0) return;
+            dead[row >>> 6] |= 1L << row;
+            deadCount++;
+        }
+
+        // Updates already in the delta keep their place; an updated base offer moves to the delta
+        void put(Product p) {
+            if (!delta.containsKey(p.getKey())) remove(p.getKey());
+            delta.put(p.getKey(), p);
+            unchangedDelta = null;
+        }
+
+        // Never copies the base; ProductDAO.compact folds an overlay that grew too large
+        CatalogSegment build() {
+            if (delta.isEmpty() && deadCount == baseSize) return null;
+            if (delta.isEmpty() && deadCount == 0) return base;
+            ArraySegment changed = unchangedDelta != null ? unchangedDelta : new ArraySegment(category, new ArrayList<>(delta.values()));
+            return base == null ? changed : new OverlaySegment(base, dead, deadCount, changed);
+        }
+    }
+
+    static List<Product> initializeProducts() {
+        List<Product> list = new ArrayList<>();
+        list.add(new Product("Chef's Kitchen", "Padang Rice with Rendang", 22000, 4.9, 20, "5k", "padang", 2, "large", "medium"));
+        list.add(new Product("Express Padang", "Ayam Pop Padang Rice", 18000, 4.7, 15, "Free", "padang", 1, "normal", "simple"));
+        list.add(new Product("Budget Meals", "Economy Padang Rice", 15000, 4.5, 12, "Free", "padang", 1, "normal", "simple"));
+        list.add(new Product("Fast Kitchen", "Express Padang Rice", 16000, 4.6, 8, "Free", "padang", 1, "normal", "simple"));
+        list.add(new Product("Warung Sari", "Special Fried Rice", 15000, 4.8, 15, "Free", "food", 2, "large", "simple"));
+        list.add(new Product("Home Cook", "Complete Mixed Rice", 12000, 4.5, 25, "Free", "food", 1, "normal", "simple"));
+        list.add(new Product("Fried Chicken", "Jumbo Geprek Chicken", 18000, 4.9, 20, "5k", "food", 3, "large", "medium"));
+        list.add(new Product("Burger Stop", "Double Beef Burger", 32000, 4.8, 15, "5k", "food", 2, "normal", "simple"));
+        list.add(new Product("Pizza House", "Personal Pizza", 35000, 4.6, 25, "10k", "food", 2, "normal", "medium"));
+        list.add(new Product("Fresh Juice", "Fresh Fruit Ice", 8000, 4.7, 5, "Free", "beverage", 5, "large", "simple"));
+        list.add(new Product("Coffee Shop", "Palm Sugar Coffee", 12000, 4.9, 8, "2k", "beverage", 4, "normal", "simple"));
+        list.add(new Product("Tea House", "Jumbo Sweet Iced Tea", 5000, 4.4, 3, "Free", "beverage", 5, "large", "simple"));
+        list.add(new Product("Boba Store", "Brown Sugar Boba Milk", 20000, 4.8, 12, "5k", "beverage", 5, "large", "medium"));
+        return list;
+    }
+
+    private static Map<String, CatalogSegment> buildSegments(List<Product> list) {
+        Map<String, List<Product>> grouped = new LinkedHashMap<>();
+        for (Product p : list) grouped.computeIfAbsent(p.getCategory(), k -> new ArrayList<>()).add(p);
+        Map<String, CatalogSegment> map = new HashMap<>();
+        for (Map.Entry<String, List<Product>> e : grouped.entrySet()) {
+            map.put(e.getKey(), new ArraySegment(e.getKey(), e.getValue()));
+        }
+        return map;
+    }
+
+    // Returns a shared read-only view; no per-call allocation
+    public List<Product> getByCategory(String category) {
+        CatalogSegment segment = snapshot.getSegment(category);
+        return segment == null ? Collections.emptyList() : segment.getProducts();
+    }
+
+    public Snapshot snapshot() { return snapshot; }
+    public CatalogSegment getSegment(String category) { return snapshot.getSegment(category); }
+    public Set<String> getCategories() { return snapshot.getCategories(); }
+    public long getVersion() { return snapshot.getVersion(); }
+    public int size() { return snapshot.size(); }
+}
+
+// Cart Item - Represents single cart entry (immutable; the cart swaps entries on change)
+class CartEntry {
+    private final Product product;
+    private final int quantity;
+
+    public CartEntry(Product product, int quantity) {
+        this.product = product;
+        this.quantity = quantity;
+    }
+
+    public Product getProduct() { return product; }
+    public int getQuantity() { return quantity; }
+    public long getTotal() { return (long) product.getPrice() * quantity; }
+}
+
+// Cart Listener - Fine-grained cart changes, delivered in mutation order outside the cart's lock, on a mutating thread
+interface CartListener {
+    default void itemInserted(int index, CartEntry entry) {}
+    default void itemUpdated(int index, CartEntry entry) {}
+    default void itemRemoved(int index, CartEntry entry) {}
+    default void cleared() {}
+    default void totalChanged(long total, int count) {}
+}
+
+// Shopping Cart - Manages cart operations, keyed by Product.getKey() with a running total
+//
+// Rows keep their insertion order in a slot array; a removed row leaves an empty slot, and a Fenwick tree over
+// the slots turns a row's slot into its index in O(log n), so no operation shifts or renumbers rows. The slots
+// are repacked once they fill up or three quarters of them are empty, which keeps every operation amortized
+// O(log n). Listener events are queued under the cart's lock, in mutation order, and delivered after it is released.
+class Cart {
+    private final Map<String, Row> items;
+    private Row[] slots = new Row[16];   // rows in insertion order; null where a row was removed
+    private int[] liveUpTo = new int[17];   // Fenwick tree over the slots, 1-based: one per occupied slot
+    private int slotCount;
+    private volatile CartListener[] listeners = new CartListener[0];
+    private final Queue<Runnable> pending = new ArrayDeque<>();   // guarded by this
+    private final ReentrantLock delivering = new ReentrantLock();
+    private long total;
+
+    private static final class Row {
+        CartEntry entry;
+        int slot;
+
+        Row(CartEntry entry, int slot) {
+            this.entry = entry;
+            this.slot = slot;
+        }
+    }
+
+    public Cart() { this.items = new HashMap<>(); }
+
+    // Registers a listener and returns the current items; it receives exactly the events of later mutations
+    public List<CartEntry> addListener(CartListener listener) {
+        synchronized (this) {
+            CartListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+            next[next.length - 1] = listener;
+            listeners = next;
+            return getItems();
+        }
+    }
+
+    public synchronized void removeListener(CartListener listener) {
+        List<CartListener> next = new ArrayList<>(Arrays.asList(listeners));
+        if (next.remove(listener)) listeners = next.toArray(new CartListener[0]);
+    }
+
+    public void add(Product product, int qty) {
+        if (qty <= 0) throw new IllegalArgumentException("Quantity must be positive: " + qty);
+        synchronized (this) {
+            Row row = items.get(product.getKey());
+            if (row == null) {
+                if (slotCount == slots.length) repack(Math.max(16, 2 * items.size()));
+                row = new Row(new CartEntry(product, qty), slotCount++);
+                slots[row.slot] = row;
+                count(row.slot, 1);
+                items.put(product.getKey(), row);
+                total += row.entry.getTotal();
+                int index = indexOf(row);
+                CartEntry entry = row.entry;
+                queue(l -> l.itemInserted(index, entry));
+                queueTotal();
+            } else {
+                update(row, new CartEntry(row.entry.getProduct(), Math.addExact(row.entry.getQuantity(), qty)));
+            }
+        }
+        TenderMetrics.get().cartOperation(TenderMetrics.CartOp.ADD);
+        deliver();
+    }
+
+    // Sets the quantity of an item already in the cart; zero removes it
+    public boolean setQuantity(String key, int qty) {
+        if (qty < 0) throw new IllegalArgumentException("Quantity must not be negative: " + qty);
+        if (qty == 0) return remove(key);
+        synchronized (this) {
+            Row row = items.get(key);
+            if (row == null) return false;
+            if (qty == row.entry.getQuantity()) return true;
+            update(row, new CartEntry(row.entry.getProduct(), qty));
+        }
+        TenderMetrics.get().cartOperation(TenderMetrics.CartOp.UPDATE);
+        deliver();
+        return true;
+    }
+
+    private void update(Row row, CartEntry entry) {
+        total += entry.getTotal() - row.entry.getTotal();
+        row.entry = entry;
+        int index = indexOf(row);
+        queue(l -> l.itemUpdated(index, entry));
+        queueTotal();
+    }
+
+    public boolean remove(String key) {
+        synchronized (this) {
+            Row removed = items.remove(key);
+            if (removed == null) return false;
+            total -= removed.entry.getTotal();
+            int index = indexOf(removed);
+            count(removed.slot, -1);
+            slots[removed.slot] = null;
+            if (slotCount > 64 && items.size() < slotCount / 4) repack(2 * items.size());
+            CartEntry entry = removed.entry;
+            queue(l -> l.itemRemoved(index, entry));
+            queueTotal();
+        }
+        TenderMetrics.get().cartOperation(TenderMetrics.CartOp.REMOVE);
+        deliver();
+        return true;
+    }
+
+    // Rows before and at the slot that are still in the cart, minus one
+    private int indexOf(Row row) {
+        int live = 0;
+        for (int i = row.slot + 1; i > 0; i -= i & -i) live += liveUpTo[i];
+        return live - 1;
+    }
+
+    private void count(int slot, int delta) {
+        for (int i = slot + 1; i < liveUpTo.length; i += i & -i) liveUpTo[i] += delta;
+    }
+
+    // Moves the rows to the front of a fresh slot array and rebuilds the tree in linear time
+    private void repack(int capacity) {
+        Row[] packed = new Row[Math.max(16, capacity)];
+        int n = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] == null) continue;
+            slots[i].slot = n;
+            packed[n++] = slots[i];
+        }
+        int[] tree = new int[packed.length + 1];
+        for (int i = 1; i < tree.length; i++) {
+            if (i <= n) tree[i]++;
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+        slots = packed;
+        liveUpTo = tree;
+        slotCount = n;
+    }
+
+    // Called with the lock held; captures the listeners registered at this point of the mutation order
+    private void queue(java.util.function.Consumer<CartListener> event) {
+        CartListener[] targets = listeners;
+        if (targets.length > 0) pending.add(() -> { for (CartListener l : targets) event.accept(l); });
+    }
+
+    private void queueTotal() {
+        long amount = total;
+        int count = items.size();
+        queue(l -> l.totalChanged(amount, count));
+    }
+
+    private synchronized Runnable nextEvent() { return pending.poll(); }
+    private synchronized boolean hasPending() { return !pending.isEmpty(); }
+
+    // One thread at a time delivers queued events, without the cart's lock; a mutating thread that finds another
+    // thread delivering leaves its events to it. Listeners may mutate the cart; their events follow in order.
+    private void deliver() {
+        while (delivering.tryLock()) {
+            try {
+                for (Runnable event = nextEvent(); event != null; event = nextEvent()) event.run();
+            } finally {
+                delivering.unlock();
+            }
+            if (!hasPending()) return;   // events queued after the last poll but before the unlock
+        }
+    }
+
+    // Snapshot in insertion order; safe to iterate while other threads mutate the cart
+    public synchronized List<CartEntry> getItems() {
+        List<CartEntry> snapshot = new ArrayList<>(items.size());
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] != null) snapshot.add(slots[i].entry);
+        }
+        return snapshot;
+    }
+
+    public synchronized CartEntry get(String key) {
+        Row row = items.get(key);
+        return row == null ? null : row.entry;
+    }
+
+    public synchronized long getTotal() { return total; }
+
+    public void clear() {
+        synchronized (this) {
+            items.clear();
+            slots = new Row[16];
+            liveUpTo = new int[17];
+            slotCount = 0;
+            total = 0;
+            queue(CartListener::cleared);
+            queueTotal();
+        }
+        TenderMetrics.get().cartOperation(TenderMetrics.CartOp.CLEAR);
+        deliver();
+    }
+
+    public synchronized int count() { return items.size(); }
+}
+
+// Latency Histogram - Log-linear buckets (about 3% precision) over striped atomic counters
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;   // ~18 minutes in nanoseconds
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray[] stripes;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        int n = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        stripes = new AtomicLongArray[n];
+        for (int i = 0; i < n; i++) stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    // Values below 2 * SUB_COUNT get their own bucket; above that each power of two splits into SUB_COUNT buckets
+    static int index(long value) {
+        if (value < 2 * SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        stripe.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Percentile in nanoseconds, reported as the upper bound of the bucket it falls in
+    public long percentile(double p) {
+        return percentiles(p)[0];
+    }
+
+    // Several percentiles, ascending, from one pass over the stripes
+    public long[] percentiles(double... ps) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.get(i);
+                merged[i] += c;
+                total += c;
+            }
+        }
+        long[] values = new long[ps.length];
+        if (total == 0) return values;
+        long seen = 0;
+        int i = -1;
+        for (int k = 0; k < ps.length; k++) {
+            long target = Math.max(1, (long) Math.ceil(total * ps[k] / 100.0));
+            while (seen < target && i + 1 < BUCKETS) seen += merged[++i];
+            values[k] = seen >= target ? Math.min(upperBound(i), max.get()) : max.get();
+        }
+        return values;
+    }
+
+    public long getCount() { return count.sum(); }
+    public long getMax() { return max.get(); }
+    public long getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : sum.sum() / c;
+    }
+}
+
+// Tender Metrics - Stage latencies, candidate counts, cache and cart counters; exported over JMX
+//   -Dtender.metrics.dumpSeconds=N prints a text report every N seconds
+final class TenderMetrics implements DynamicMBean {
+    // PAINT is the Swing frame's results paint, SERIALIZE the HTTP endpoint's JSON; they never share a histogram
+    enum Stage { PARSE, CATEGORY_LOOKUP, SCORING, RANKING, PAINT, SERIALIZE, TOTAL, SHARD_GATHER }
+    enum CartOp { ADD, UPDATE, REMOVE, CLEAR }
+
+    private static final TenderMetrics INSTANCE = new TenderMetrics();
+    // JMX consoles poll attribute by attribute; reads this close to a snapshot reuse it
+    private static final long SNAPSHOT_REUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final LongAdder[] cartOps = new LongAdder[CartOp.values().length];
+    private final Map<String, LongAdder> categorySearches = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> categoryCandidates = new ConcurrentHashMap<>();
+    private final List<SearchCache> caches = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService dumper;
+    private volatile Sample lastSample;
+
+    private static final class Sample {
+        final Map<String, Object> values;
+        final long takenAt;
+
+        Sample(Map<String, Object> values, long takenAt) {
+            this.values = values;
+            this.takenAt = takenAt;
+        }
+    }
+
+    private TenderMetrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new LatencyHistogram();
+        for (int i = 0; i < cartOps.length; i++) cartOps[i] = new LongAdder();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("buyertender:type=TenderMetrics"));
+        } catch (JMException | SecurityException e) {
+            System.err.println("TenderMetrics: JMX registration failed: " + e);
+        }
+        long dumpSeconds = Long.getLong("tender.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) startDump(dumpSeconds, TimeUnit.SECONDS, System.out);
+    }
+
+    static TenderMetrics get() { return INSTANCE; }
+
+    public void record(Stage stage, long nanos) { stages[stage.ordinal()].record(nanos); }
+    public void cartOperation(CartOp op) { cartOps[op.ordinal()].increment(); }
+    public void registerCache(SearchCache cache) { caches.add(cache); }
+
+    public void candidates(String category, int count) {
+        categorySearches.computeIfAbsent(category, k -> new LongAdder()).increment();
+        categoryCandidates.computeIfAbsent(category, k -> new LongAdder()).add(count);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) { return stages[stage.ordinal()]; }
+
+    public synchronized void startDump(long period, TimeUnit unit, PrintStream out) {
+        if (dumper != null) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print(report()), period, period, unit);
+    }
+
+    // Flat name -> value view shared by the JMX attributes and the text report
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = stages[stage.ordinal()];
+            String name = stage.name().toLowerCase();
+            long[] p = h.percentiles(50, 99, 99.9);
+            values.put(name + ".count", h.getCount());
+            values.put(name + ".p50Micros", p[0] / 1000.0);
+            values.put(name + ".p99Micros", p[1] / 1000.0);
+            values.put(name + ".p999Micros", p[2] / 1000.0);
+            values.put(name + ".maxMicros", h.getMax() / 1000.0);
+        }
+        long hits = 0, misses = 0, evictions = 0;
+        for (SearchCache cache : caches) {
+            hits += cache.getHits();
+            misses += cache.getMisses();
+            evictions += cache.getEvictions();
+        }
+        values.put("cache.hits", hits);
+        values.put("cache.misses", misses);
+        values.put("cache.evictions", evictions);
+        values.put("cache.hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        for (CartOp op : CartOp.values()) values.put("cart." + op.name().toLowerCase(), cartOps[op.ordinal()].sum());
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(categorySearches).entrySet()) {
+            long searches = e.getValue().sum();
+            long candidates = categoryCandidates.get(e.getKey()).sum();
+            values.put("category." + e.getKey() + ".searches", searches);
+            values.put("category." + e.getKey() + ".avgCandidates", searches == 0 ? 0.0 : (double) candidates / searches);
+        }
+        return values;
+    }
+
+    // A fresh snapshot, kept for the attribute reads that follow it
+    private Map<String, Object> sample() {
+        Map<String, Object> values = snapshot();
+        lastSample = new Sample(values, System.nanoTime());
+        return values;
+    }
+
+    private Map<String, Object> recentSample() {
+        Sample last = lastSample;
+        return last != null && System.nanoTime() - last.takenAt < SNAPSHOT_REUSE_NANOS ? last.values : sample();
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder("--- tender metrics " + new SimpleDateFormat("HH:mm:ss").format(new Date()) + " ---\n");
+        for (Map.Entry<String, Object> e : snapshot().entrySet()) {
+            Object v = e.getValue();
+            sb.append(String.format(v instanceof Double ? "%-36s %,.3f%n" : "%-36s %,d%n", e.getKey(), v));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = recentSample().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = sample();
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            if (values.containsKey(name)) list.add(new Attribute(name, values.get(name)));
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) { return new AttributeList(); }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        // Names and types only; a sample taken here, e.g. at registration, would be served as attribute values
+        for (Map.Entry<String, Object> e : snapshot().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Buyer tender search metrics",
+            attributes.toArray(new MBeanAttributeInfo[0]), new MBeanConstructorInfo[0],
+            new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+}
+
+// Tender Result - Outcome of one headless search
+final class TenderResult {
+    private final String query, category;
+    private final int criteria;
+    private final boolean textMatched;
+    private final RankedResults results;
+    private final long elapsedNanos;
+    private final List<String> failedShards;
+
+    TenderResult(String query, String category, int criteria, boolean textMatched, RankedResults results, long elapsedNanos) {
+        this(query, category, criteria, textMatched, results, elapsedNanos, Collections.emptyList());
+    }
+
+    // failedShards names the shards that timed out or failed; the results then cover the others only
+    TenderResult(String query, String category, int criteria, boolean textMatched, RankedResults results, long elapsedNanos,
+                 List<String> failedShards) {
+        this.query = query;
+        this.category = category;
+        this.criteria = criteria;
+        this.textMatched = textMatched;
+        this.results = results;
+        this.elapsedNanos = elapsedNanos;
+        this.failedShards = failedShards;
+    }
+
+    public String getQuery() { return query; }
+    public String getCategory() { return category; }
+    public int getCriteria() { return criteria; }
+    // False when no offer text matched and the results rank the category instead
+    public boolean isTextMatched() { return textMatched; }
+    public RankedResults getResults() { return results; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public List<String> getFailedShards() { return failedShards; }
+    public boolean isPartial() { return !failedShards.isEmpty(); }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256 + results.size() * 192);
+        sb.append("{\"query\":").append(Json.quote(query))
+          .append(",\"category\":").append(Json.quote(category))
+          .append(",\"criteria\":[");
+        boolean first = true;
+        for (int i = 0; i < Criteria.NAMES.length; i++) {
+            if ((criteria & (1 << i)) == 0) continue;
+            if (!first) sb.append(',');
+            sb.append(Json.quote(Criteria.NAMES[i]));
+            first = false;
+        }
+        sb.append("],\"textMatched\":").append(textMatched)
+          .append(",\"tookMicros\":").append(elapsedNanos / 1000);
+        if (isPartial()) {
+            sb.append(",\"partial\":true,\"failedShards\":[");
+            for (int i = 0; i < failedShards.size(); i++) sb.append(i > 0 ? "," : "").append(Json.quote(failedShards.get(i)));
+            sb.append(']');
+        }
+        sb.append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            Product p = results.product(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"seller\":").append(Json.quote(p.getSeller()))
+              .append(",\"name\":").append(Json.quote(p.getName()))
+              .append(",\"price\":").append(p.getPrice())
+              .append(",\"delivery\":").append(Json.quote(p.getDelivery()))
+              .append(",\"deliveryFee\":").append(p.getDeliveryFee())
+              .append(",\"totalPrice\":").append(p.getTotalPrice())
+              .append(",\"deliveryTime\":").append(p.getDeliveryTime())
+              .append(",\"rating\":").append(p.getRating())
+              .append(",\"category\":").append(Json.quote(p.getCategory()))
+              .append(",\"sweetness\":").append(p.getSweetness())
+              .append(",\"portion\":").append(Json.quote(p.getPortion().label()))
+              .append(",\"complexity\":").append(Json.quote(p.getComplexity().label()))
+              .append(",\"score\":").append(results.score(i)).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+}
+
+// Tender Engine - Answers tender searches, from one local catalog or by fanning out to shards
+interface TenderEngine {
+    default TenderResult search(String query, int limit, SortKey sortKey, int maxTotalPrice) {
+        return search(query, limit, sortKey, maxTotalPrice, null);
+    }
+
+    // textStats: BM25 statistics per category gathered across a coordinator's shards, or null to use the engine's own
+    TenderResult search(String query, int limit, SortKey sortKey, int maxTotalPrice, Map<String, TextIndex.Stats> textStats);
+
+    // BM25 statistics per category of the query's free-text terms over the catalog it would search (empty without text)
+    Map<String, TextIndex.Stats> textStats(String query);
+
+    // Body of the /health response
+    String healthJson();
+}
+
+// Tender Service - Headless matching engine; the Swing frame and the HTTP endpoint are both clients
+//   java -Djava.awt.headless=true TenderService [port]      (default port 8080)
+//   GET /search?q=cheap+fast+padang&limit=6&sort=total&maxTotal=20000
+//   GET /stats?q=brown+sugar     (BM25 statistics a coordinator sums across shards and passes back as &stats=)
+class TenderService implements TenderEngine {
+    static final int MAX_LIMIT = 1000;
+
+    private final ProductDAO db;
+    private final SearchCache cache;
+
+    public TenderService() { this(new ProductDAO()); }
+
+    public TenderService(ProductDAO db) {
+        this.db = db;
+        this.cache = new SearchCache(4096, 10, TimeUnit.MINUTES);
+        TenderMetrics.get().registerCache(cache);
+    }
+
+    public TenderResult search(String query, int limit) {
+        return search(query, limit, SortKey.BEST_MATCH, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public TenderResult search(String query, int limit, SortKey sortKey, int maxTotalPrice, Map<String, TextIndex.Stats> textStats) {
+        checkArguments(query, limit);
+        long start = System.nanoTime();
+        SearchRequest request = newRequest(query, sortKey, maxTotalPrice);
+        if (textStats == null) return run(request, limit, start);
+
+        // Scores depend on other nodes' catalogs too, which the cache's source check cannot see
+        request.setTextStats(textStats);
+        SearchCache.addCandidates(request, db.snapshot());
+        RankedResults results = request.getTopRanked(limit);
+        long elapsed = System.nanoTime() - start;
+        TenderMetrics.get().record(TenderMetrics.Stage.TOTAL, elapsed);
+        return new TenderResult(request.getQuery(), request.getCategory(), request.getCriteriaMask(), request.isTextMatched(), results, elapsed);
+    }
+
+    @Override
+    public Map<String, TextIndex.Stats> textStats(String query) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Query must not be empty");
+        SearchRequest request = new SearchRequest(query.trim());
+        Map<String, TextIndex.Stats> stats = new LinkedHashMap<>();
+        if (request.getTextTerms().isEmpty()) return stats;
+        for (CatalogSegment segment : SearchCache.textScope(request, db.snapshot())) {
+            stats.put(segment.getCategory(), segment.textStats(request.getTextTerms()));
+        }
+        return stats;
+    }
+
+    // Parsed but not yet run; a caller that keeps it can cancel() the search once it is superseded
+    public SearchRequest newRequest(String query, SortKey sortKey, int maxTotalPrice) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Query must not be empty");
+        long start = System.nanoTime();
+        SearchRequest request = new SearchRequest(query.trim());
+        request.setSortKey(sortKey);
+        request.setMaxTotalPrice(maxTotalPrice);
+        TenderMetrics.get().record(TenderMetrics.Stage.PARSE, System.nanoTime() - start);
+        return request;
+    }
+
+    public TenderResult search(SearchRequest request, int limit) {
+        checkArguments(request.getQuery(), limit);
+        return run(request, limit, System.nanoTime());
+    }
+
+    /**
+     * The `limit` results ranked after the first `shown` of a search, for lists that page as the user
+     * scrolls. A request answered from the cache holds no scores, so its first page scores it once,
+     * bypassing the cache; later pages continue from the request's stored scores.
+     */
+    public RankedResults nextPage(SearchRequest request, int shown, int limit) {
+        checkArguments(request.getQuery(), limit);
+        if (!request.isScored()) {
+            SearchCache.addCandidates(request, db.snapshot());
+            request.getTopRanked(shown);
+        }
+        return request.nextPage(limit);
+    }
+
+    private TenderResult run(SearchRequest request, int limit, long start) {
+        RankedResults results = cache.search(request, db, limit);
+        long elapsed = System.nanoTime() - start;
+        TenderMetrics.get().record(TenderMetrics.Stage.TOTAL, elapsed);
+        return new TenderResult(request.getQuery(), request.getCategory(), request.getCriteriaMask(), request.isTextMatched(), results, elapsed);
+    }
+
+    static void checkArguments(String query, int limit) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Query must not be empty");
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+    }
+
+    @Override
+    public String healthJson() { return "{\"status\":\"ok\",\"offers\":" + db.size() + "}"; }
+
+    public ProductDAO getDao() { return db; }
+    public SearchCache getCache() { return cache; }
+
+    // Virtual threads when the JDK has them (21+), otherwise a cached pool of daemon threads
+    static ExecutorService newExecutor(String threadName) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, threadName);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public HttpServer startHttp(int port) throws IOException {
+        return startHttp(this, new InetSocketAddress(port));
+    }
+
+    // Same endpoints for a single node, a shard and a coordinator; port 0 picks a free port
+    static HttpServer startHttp(TenderEngine engine, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 1024);
+        server.createContext("/search", exchange -> handleSearch(engine, exchange));
+        server.createContext("/stats", exchange -> handleStats(engine, exchange));
+        server.createContext("/health", exchange -> respond(exchange, 200, engine.healthJson()));
+        server.setExecutor(newExecutor("http-worker"));
+        server.start();
+        return server;
+    }
+
+    private static void handleSearch(TenderEngine engine, HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"GET only\"}");
+                return;
+            }
+            Map<String, String> params = queryParams(exchange.getRequestURI().getRawQuery());
+            int limit = Integer.parseInt(params.getOrDefault("limit", "6"));
+            SortKey sortKey = "total".equals(params.get("sort")) ? SortKey.TOTAL_PRICE : SortKey.BEST_MATCH;
+            int maxTotal = params.containsKey("maxTotal") ? Integer.parseInt(params.get("maxTotal")) : Integer.MAX_VALUE;
+            Map<String, TextIndex.Stats> stats = params.containsKey("stats") ? TextIndex.Stats.parse(params.get("stats")) : null;
+            TenderResult result = engine.search(params.get("q"), limit, sortKey, maxTotal, stats);
+            long start = System.nanoTime();
+            String json = result.toJson();
+            TenderMetrics.get().record(TenderMetrics.Stage.SERIALIZE, System.nanoTime() - start);
+            respond(exchange, 200, json);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "{\"error\":" + Json.quote(String.valueOf(e.getMessage())) + "}");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{\"error\":" + Json.quote(String.valueOf(e)) + "}");
+        }
+    }
+
+    private static void handleStats(TenderEngine engine, HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"GET only\"}");
+                return;
+            }
+            String query = queryParams(exchange.getRequestURI().getRawQuery()).get("q");
+            respond(exchange, 200, TextIndex.Stats.toJson(engine.textStats(query)));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "{\"error\":" + Json.quote(String.valueOf(e.getMessage())) + "}");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{\"error\":" + Json.quote(String.valueOf(e)) + "}");
+        }
+    }
+
+    private static Map<String, String> queryParams(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                       URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        TenderService service = new TenderService();
+        service.startHttp(port);
+        System.out.printf("Tender service listening on port %d with %,d offers%n", port, service.getDao().size());
+    }
+}
+
+// Shard Key - How offers are partitioned across engine nodes; String.hashCode keeps it stable across JVMs
+enum ShardKey {
+    CATEGORY,   // each category lives on one shard, so a category search touches only that shard
+    SELLER;     // spreads big categories evenly, but every search fans out to all shards, text searches twice
+
+    static ShardKey of(String name) { return valueOf(name.trim().toUpperCase()); }
+
+    static int shardOf(String value, int shards) { return Math.floorMod(value.hashCode(), shards); }
+
+    int shardOf(Product p, int shards) { return shardOf(this == CATEGORY ? p.getCategory() : p.getSeller(), shards); }
+
+    List<List<Product>> partition(List<Product> products, int shards) {
+        if (shards < 1) throw new IllegalArgumentException("Shard count must be positive: " + shards);
+        List<List<Product>> parts = new ArrayList<>();
+        for (int i = 0; i < shards; i++) parts.add(new ArrayList<>());
+        for (Product p : products) parts.get(shardOf(p, shards)).add(p);
+        return parts;
+    }
+}
+
+// Shard Coordinator - Scatters each search to the shards that can answer it and merges their top-K
+//
+// Shards are TenderService nodes reached over their HTTP endpoint. The coordinator parses queries with
+// its own KeywordDictionary to route them, so it must run with the same -Dtender.keywords as the shards.
+// BM25 statistics are per category, as on one node. Category partitioning keeps each category on one shard;
+// otherwise a text search first asks every shard for its statistics and has them all score with the sums,
+// so scores equal a single node's (offers tied on score and price may come back in another order).
+class ShardCoordinator implements TenderEngine {
+    private final List<URI> shards;
+    private final ShardKey shardKey;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    public ShardCoordinator(List<URI> shards, ShardKey shardKey, Duration timeout) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required");
+        List<URI> bases = new ArrayList<>();
+        for (URI uri : shards) bases.add(uri.toString().endsWith("/") ? uri : URI.create(uri + "/"));
+        this.shards = Collections.unmodifiableList(bases);
+        this.shardKey = shardKey;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .executor(TenderService.newExecutor("shard-client"))
+            .build();
+    }
+
+    /**
+     * Asks each relevant shard for its own top `limit` and merges them with the ranking SearchRequest
+     * uses. Shards that fail or miss the per-shard timeout are listed in the result, which then covers
+     * the shards that answered; only when none answers is the search an error. Without `textStats`, a
+     * text search over a partition that splits categories gathers them from the shards first.
+     */
+    @Override
+    public TenderResult search(String query, int limit, SortKey sortKey, int maxTotalPrice, Map<String, TextIndex.Stats> textStats) {
+        TenderService.checkArguments(query, limit);
+        long start = System.nanoTime();
+        SearchRequest request = new SearchRequest(query.trim());
+        List<URI> targets = new ArrayList<>(route(request));
+        List<String> failed = new ArrayList<>();
+        if (textStats == null && shardKey != ShardKey.CATEGORY && targets.size() > 1 && !request.getTextTerms().isEmpty()) {
+            textStats = gatherStats(request.getQuery(), targets, failed);
+        }
+        String params = "search?q=" + URLEncoder.encode(request.getQuery(), StandardCharsets.UTF_8) + "&limit=" + limit
+            + (sortKey == SortKey.TOTAL_PRICE ? "&sort=total" : "")
+            + (maxTotalPrice == Integer.MAX_VALUE ? "" : "&maxTotal=" + maxTotalPrice)
+            + (textStats == null ? "" : "&stats=" + URLEncoder.encode(TextIndex.Stats.toJson(textStats), StandardCharsets.UTF_8));
+        List<CompletableFuture<String>> calls = new ArrayList<>(targets.size());
+        for (URI shard : targets) calls.add(get(shard.resolve(params)));
 
-    public Product(String seller, String name, int price, double rating, int deliveryTime,
-                   String delivery, String category, int sweetness, String portion, String complexity) {
-        this.seller = seller;
-        this.name = name;
-        this.price = price;
-        this.rating = rating;
-        this.deliveryTime = deliveryTime;
-        this.delivery = delivery;
-        this.category = category;
-        this.sweetness = sweetness;
-        this.portion = portion;
-        this.complexity = complexity;
-        this.matchScore = 0;
+        List<Map<String, Object>> answers = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i++) {
+            try {
+                answers.add(Json.parseObject(calls.get(i).join()));
+            } catch (RuntimeException e) {
+                failed.add(targets.get(i).toString());
+            }
+        }
+        TenderMetrics.get().record(TenderMetrics.Stage.SHARD_GATHER, System.nanoTime() - start);
+        if (answers.isEmpty()) throw new IllegalStateException("No shard answered: " + failed);
+
+        // A single node falls back to the category only when no offer text matched anywhere, so once any
+        // shard matched text the answers of shards that fell back are dropped
+        boolean textMatched = false;
+        for (Map<String, Object> answer : answers) textMatched |= Boolean.TRUE.equals(answer.get("textMatched"));
+        List<Product> products = new ArrayList<>();
+        List<Integer> scores = new ArrayList<>();
+        for (Map<String, Object> answer : answers) {
+            if (textMatched && !Boolean.TRUE.equals(answer.get("textMatched"))) continue;
+            for (Object item : (List<?>) answer.get("results")) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> offer = (Map<String, Object>) item;
+                products.add(CatalogImporter.fromJson(offer));
+                scores.add(((Number) offer.get("score")).intValue());
+            }
+        }
+        RankedResults merged = merge(products, scores, sortKey, limit);
+        long elapsed = System.nanoTime() - start;
+        TenderMetrics.get().record(TenderMetrics.Stage.TOTAL, elapsed);
+        String category = textMatched && !request.isCategoryMatched() ? SearchRequest.ALL_CATEGORIES : request.getCategory();
+        return new TenderResult(request.getQuery(), category, request.getCriteriaMask(), textMatched, merged, elapsed, failed);
     }
 
-    public int getTotalPrice() {
-        if (delivery.equalsIgnoreCase("Free")) return price;
-        int fee = Integer.parseInt(delivery.replaceAll("[^0-9]", ""));
-        return price + fee;
+    @Override
+    public Map<String, TextIndex.Stats> textStats(String query) {
+        if (query == null || query.isBlank()) throw new IllegalArgumentException("Query must not be empty");
+        SearchRequest request = new SearchRequest(query.trim());
+        List<String> failed = new ArrayList<>();
+        return gatherStats(request.getQuery(), new ArrayList<>(route(request)), failed);
     }
 
-    public int calculateMatchScore(Map<String, Boolean> criteria) {
-        int score = 0;
-        if (criteria.getOrDefault("cheapest", false) && price <= 15000) score += 3;
-        if (criteria.getOrDefault("sweet", false) && sweetness >= 3) score += 2;
-        if (criteria.getOrDefault("large", false) && "large".equals(portion)) score += 2;
-        if (criteria.getOrDefault("simple", false) && "simple".equals(complexity)) score += 2;
-        if (criteria.getOrDefault("fastest", false) && deliveryTime <= 15) score += 3;
-        return score;
+    // Sums each category's statistics over the targets; shards that fail move from targets to failed
+    private Map<String, TextIndex.Stats> gatherStats(String query, List<URI> targets, List<String> failed) {
+        String params = "stats?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8);
+        List<CompletableFuture<String>> calls = new ArrayList<>(targets.size());
+        for (URI shard : targets) calls.add(get(shard.resolve(params)));
+        Map<String, TextIndex.Stats> merged = new LinkedHashMap<>();
+        List<URI> answered = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i++) {
+            try {
+                TextIndex.Stats.parse(calls.get(i).join()).forEach((category, stats) -> merged.merge(category, stats, TextIndex.Stats::plus));
+                answered.add(targets.get(i));
+            } catch (RuntimeException e) {
+                failed.add(targets.get(i).toString());
+            }
+        }
+        if (answered.isEmpty()) throw new IllegalStateException("No shard answered: " + failed);
+        targets.retainAll(answered);
+        return merged;
     }
 
-    public String getSeller() { return seller; }
-    public String getName() { return name; }
-    public int getPrice() { return price; }
-    public double getRating() { return rating; }
-    public int getDeliveryTime() { return deliveryTime; }
-    public String getDelivery() { return delivery; }
-    public String getCategory() { return category; }
-    public int getMatchScore() { return matchScore; }
-    public void setMatchScore(int score) { this.matchScore = score; }
+    // A category-partitioned catalog answers a category search from one shard; anything else fans out
+    List<URI> route(SearchRequest request) {
+        boolean everyCategory = !request.getTextTerms().isEmpty() && !request.isCategoryMatched();
+        if (shardKey == ShardKey.CATEGORY && !everyCategory) {
+            return Collections.singletonList(shards.get(ShardKey.shardOf(request.getCategory(), shards.size())));
+        }
+        return shards;
+    }
+
+    // Candidates are in shard order, then each shard's rank, so ties break the same way on every call
+    private static RankedResults merge(List<Product> products, List<Integer> scoreList, SortKey sortKey, int limit) {
+        int n = products.size();
+        int[] scores = new int[n];
+        int[] prices = new int[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = scoreList.get(i);
+            prices[i] = sortKey == SortKey.TOTAL_PRICE ? products.get(i).getTotalPrice() : products.get(i).getPrice();
+        }
+        boolean priceFirst = sortKey == SortKey.TOTAL_PRICE;
+        int[] ids = new TopKSelector(scores, prices, priceFirst, Math.min(limit, n)).offerRange(0, n, -1).drain();
+        Product[] ranked = new Product[ids.length];
+        int[] rankedScores = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ranked[i] = products.get(ids[i]);
+            rankedScores[i] = scores[ids[i]];
+        }
+        return new RankedResults(ranked, rankedScores);
+    }
+
+    // The timeout covers the whole exchange, not just connecting and the response headers
+    private CompletableFuture<String> get(URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException(uri + " answered " + response.statusCode() + ": " + response.body());
+                }
+                return response.body();
+            });
+    }
+
+    @Override
+    public String healthJson() {
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (URI shard : shards) calls.add(get(shard.resolve("health")));
+        long offers = 0;
+        List<String> down = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i++) {
+            try {
+                offers += ((Number) Json.parseObject(calls.get(i).join()).get("offers")).longValue();
+            } catch (RuntimeException e) {
+                down.add(Json.quote(shards.get(i).toString()));
+            }
+        }
+        return "{\"status\":" + Json.quote(down.isEmpty() ? "ok" : "degraded") + ",\"offers\":" + offers
+            + ",\"shards\":" + shards.size() + ",\"partition\":" + Json.quote(shardKey.name().toLowerCase())
+            + ",\"down\":[" + String.join(",", down) + "]}";
+    }
+
+    public List<URI> getShards() { return shards; }
+
+    /**
+     * java ShardCoordinator <port> <shardCount | url,url,...> [category|seller] [timeoutMillis]
+     *
+     * A shard count starts that many in-process shards on loopback ports, each holding its partition of
+     * the local catalog. A URL list points at shard nodes instead, e.g. separate JVMs started with
+     * `java -Dtender.catalog=catalog-0.bin TenderService 8081` on catalogs split by CatalogImporter.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java ShardCoordinator <port> <shardCount|url,url,...> [category|seller] [timeoutMillis]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        ShardKey key = args.length > 2 ? ShardKey.of(args[2]) : ShardKey.SELLER;
+        Duration timeout = Duration.ofMillis(args.length > 3 ? Long.parseLong(args[3]) : 2000);
+        List<URI> shards = new ArrayList<>();
+        if (args[1].matches("\\d+")) {
+            ProductDAO catalog = new ProductDAO();
+            List<Product> offers = new ArrayList<>(catalog.size());
+            for (CatalogSegment segment : catalog.snapshot().getSegments()) offers.addAll(segment.getProducts());
+            for (List<Product> part : key.partition(offers, Integer.parseInt(args[1]))) {
+                TenderService shard = new TenderService(new ProductDAO(part));
+                HttpServer server = TenderService.startHttp(shard, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                shards.add(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"));
+            }
+        } else {
+            for (String url : args[1].split(",")) shards.add(URI.create(url.trim()));
+        }
+        ShardCoordinator coordinator = new ShardCoordinator(shards, key, timeout);
+        TenderService.startHttp(coordinator, new InetSocketAddress(port));
+        System.out.printf("Coordinator listening on port %d over %d %s-partitioned shards: %s%n",
+                          port, shards.size(), key.name().toLowerCase(), shards);
+    }
 }
 
-// Search Request - Models customer tender request
-class SearchRequest {
-    private long id;
-    private String query;
-    private String timestamp;
-    private List<Product> results;
-    private Map<String, Boolean> criteria;
-    private String category;
+// Tender Batch - Streams a JSONL file of tenders through TenderService into a JSONL file of ranked results
+//   java -Djava.awt.headless=true TenderBatch requests.jsonl results.jsonl [parallelism] [limit]
+// Each input line is an object with "query" (or "q"); an "id" or "request_id" is echoed back.
+// Output keeps input order. At most 4 x parallelism lines are in flight, so memory stays flat.
+class TenderBatch {
+    private static final CompletableFuture<String> END = CompletableFuture.completedFuture(null);
 
-    public SearchRequest(String query) {
-        this.id = System.currentTimeMillis();
-        this.query = query;
-        this.timestamp = new SimpleDateFormat("HH:mm").format(new Date());
-        this.results = new ArrayList<>();
-        this.criteria = parseKeywords(query.toLowerCase());
-        this.category = detectCategory(query.toLowerCase());
-    }
-
-    private Map<String, Boolean> parseKeywords(String text) {
-        Map<String, Boolean> map = new HashMap<>();
-        map.put("cheapest", text.matches(".*(cheap|budget|affordable).*"));
-        map.put("sweet", text.contains("sweet"));
-        map.put("large", text.matches(".*(large|big|jumbo|lot).*"));
-        map.put("simple", text.matches(".*(simple|easy|basic).*"));
-        map.put("fastest", text.matches(".*(fast|quick|rapid).*"));
-        return map;
+    private final TenderEngine service;
+    private final int parallelism, limit;
+
+    public TenderBatch(TenderEngine service, int parallelism, int limit) {
+        this.service = service;
+        this.parallelism = parallelism;
+        this.limit = limit;
     }
 
-    private String detectCategory(String text) {
-        if (text.matches(".*(padang|rendang).*")) return "padang";
-        if (text.matches(".*(drink|beverage|coffee|tea|juice).*")) return "beverage";
-        if (text.matches(".*(charger|electronic|gadget).*")) return "electronics";
-        return "food";
+    // Returns the number of lines processed
+    public long run(BufferedReader in, BufferedWriter out) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "batch-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        // The reader blocks on put() when the writer falls behind: that is the backpressure
+        BlockingQueue<CompletableFuture<String>> pending = new ArrayBlockingQueue<>(parallelism * 4);
+        IOException[] writeError = new IOException[1];
+        Thread writer = new Thread(() -> {
+            try {
+                // After a write failure keep draining so the reader never blocks on a full queue
+                for (CompletableFuture<String> next = pending.take(); next != END; next = pending.take()) {
+                    if (writeError[0] != null) continue;
+                    try {
+                        out.write(next.join());
+                        out.newLine();
+                    } catch (IOException e) {
+                        writeError[0] = e;
+                    }
+                }
+                if (writeError[0] == null) out.flush();
+            } catch (IOException e) {
+                writeError[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-writer");
+        writer.start();
+
+        long lines = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null && writeError[0] == null) {
+                if (line.isBlank()) continue;
+                long lineNo = ++lines;
+                String text = line;
+                pending.put(CompletableFuture.supplyAsync(() -> process(lineNo, text), pool));
+            }
+        } finally {
+            pending.put(END);
+            writer.join();
+            pool.shutdown();
+        }
+        if (writeError[0] != null) throw writeError[0];
+        return lines;
     }
 
-    public void addProducts(List<Product> products) {
-        for (Product p : products) {
-            p.setMatchScore(p.calculateMatchScore(criteria));
+    private String process(long lineNo, String line) {
+        String id = null;
+        try {
+            Map<String, Object> request = Json.parseObject(line);
+            Object idValue = request.containsKey("id") ? request.get("id") : request.get("request_id");
+            id = idValue == null ? null : idValue.toString();
+            Object query = request.containsKey("query") ? request.get("query") : request.get("q");
+            String result = service.search(query == null ? null : query.toString(), limit, SortKey.BEST_MATCH, Integer.MAX_VALUE).toJson();
+            return "{\"line\":" + lineNo + (id == null ? "" : ",\"id\":" + Json.quote(id)) + ",\"result\":" + result + "}";
+        } catch (RuntimeException e) {
+            return "{\"line\":" + lineNo + (id == null ? "" : ",\"id\":" + Json.quote(id))
+                + ",\"error\":" + Json.quote(String.valueOf(e.getMessage())) + "}";
         }
-        results.addAll(products);
-        results.sort((a, b) -> Integer.compare(b.getMatchScore(), a.getMatchScore()) != 0 ?
-            Integer.compare(b.getMatchScore(), a.getMatchScore()) :
-            Integer.compare(a.getPrice(), b.getPrice()));
     }
 
-    public List<Product> getTopResults(int limit) {
-        return results.subList(0, Math.min(limit, results.size()));
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java TenderBatch <requests.jsonl> <results.jsonl> [parallelism] [limit]");
+            System.exit(2);
+        }
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int limit = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        TenderBatch batch = new TenderBatch(new TenderService(), parallelism, limit);
+        long start = System.nanoTime();
+        long lines;
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            lines = batch.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Processed %,d tenders in %.2f s (%,.0f queries/sec)%n", lines, seconds, lines / seconds);
     }
+}
 
-    public long getId() { return id; }
-    public String getQuery() { return query; }
-    public String getCategory() { return category; }
-    public List<Product> getResults() { return results; }
+// UI Theme - Colors, fonts, borders and cursors shared by every component instead of re-created per card
+final class UiTheme {
+    static final Color PRIMARY = new Color(37, 99, 235);
+    static final Color SUCCESS = new Color(34, 197, 94);
+    static final Color WARNING = new Color(234, 179, 8);
+    static final Color DANGER = new Color(239, 68, 68);
+    static final Color NEUTRAL = new Color(107, 114, 128);
+    static final Color CARD_OUTLINE = new Color(191, 219, 254);
+    static final Color RESULTS_BACKGROUND = new Color(239, 246, 255);
+    static final Color PANEL_BACKGROUND = new Color(245, 247, 250);
+    static final Color EMPTY_TEXT = new Color(147, 197, 253);
+    static final Color MUTED_TEXT = new Color(71, 85, 105);
+
+    static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 26);
+    static final Font HEADING_FONT = new Font("Arial", Font.BOLD, 18);
+    static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 12);
+    static final Font INPUT_FONT = new Font("Arial", Font.PLAIN, 13);
+    static final Font CONTROL_FONT = new Font("Arial", Font.PLAIN, 12);
+    static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 11);
+    static final Font TIPS_TITLE_FONT = new Font("Arial", Font.BOLD, 11);
+    static final Font TIPS_FONT = new Font("Arial", Font.PLAIN, 10);
+    static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 11);
+    static final Font CARD_TITLE_FONT = new Font("Arial", Font.BOLD, 13);
+    static final Font CARD_PRICE_FONT = new Font("Arial", Font.BOLD, 15);
+    static final Font CARD_INFO_FONT = new Font("Arial", Font.PLAIN, 10);
+    static final Font EMPTY_FONT = new Font("Arial", Font.BOLD, 16);
+
+    static final javax.swing.border.Border CARD_MARGIN = BorderFactory.createEmptyBorder(7, 7, 8, 8);
+    static final javax.swing.border.Border CARD_BORDER = BorderFactory.createLineBorder(CARD_OUTLINE, 2);
+    static final javax.swing.border.Border CARD_SELECTED_BORDER = BorderFactory.createLineBorder(PRIMARY, 2);
+    static final javax.swing.border.Border PADDING = BorderFactory.createEmptyBorder(10, 10, 10, 10);
+    static final javax.swing.border.Border PANEL_PADDING = BorderFactory.createEmptyBorder(15, 15, 15, 15);
+    static final javax.swing.border.Border HEADER_PADDING = BorderFactory.createEmptyBorder(15, 20, 15, 20);
+    static final javax.swing.border.Border INPUT_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(PRIMARY, 2), BorderFactory.createEmptyBorder(8, 8, 8, 8));
+    static final javax.swing.border.Border TIPS_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(CARD_OUTLINE, 1), PADDING);
+    static final javax.swing.border.Border BUTTON_ROW_PADDING = BorderFactory.createEmptyBorder(10, 0, 0, 0);
+    static final Cursor HAND = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+
+    private UiTheme() {}
+
+    static JButton styleButton(JButton btn, Color bg) {
+        btn.setFont(BUTTON_FONT);
+        btn.setBackground(bg);
+        btn.setForeground(Color.WHITE);
+        btn.setFocusPainted(false);
+        btn.setCursor(HAND);
+        return btn;
+    }
 }
 
-// Data Access Object - Manages product database
-class ProductDAO {
-    private List<Product> products;
+// Cart Table Model - Mirrors a Cart row by row, applying its change events on the EDT
+class CartTableModel extends AbstractTableModel implements CartListener {
+    private static final String[] COLUMNS = {"Product", "Vendor", "Qty", "Total (IDR)"};
+    private final Cart cart;
+    private final List<CartEntry> rows;
 
-    public ProductDAO() {
-        this.products = initializeProducts();
+    CartTableModel(Cart cart) {
+        this.cart = cart;
+        this.rows = new ArrayList<>(cart.addListener(this));
     }
 
-    private List<Product> initializeProducts() {
-        List<Product> list = new ArrayList<>();
-        list.add(new Product("Chef's Kitchen", "Padang Rice with Rendang", 22000, 4.9, 20, "5k", "padang", 2, "large", "medium"));
-        list.add(new Product("Express Padang", "Ayam Pop Padang Rice", 18000, 4.7, 15, "Free", "padang", 1, "normal", "simple"));
-        list.add(new Product("Budget Meals", "Economy Padang Rice", 15000, 4.5, 12, "Free", "padang", 1, "normal", "simple"));
-        list.add(new Product("Fast Kitchen", "Express Padang Rice", 16000, 4.6, 8, "Free", "padang", 1, "normal", "simple"));
-        list.add(new Product("Warung Sari", "Special Fried Rice", 15000, 4.8, 15, "Free", "food", 2, "large", "simple"));
-        list.add(new Product("Home Cook", "Complete Mixed Rice", 12000, 4.5, 25, "Free", "food", 1, "normal", "simple"));
-        list.add(new Product("Fried Chicken", "Jumbo Geprek Chicken", 18000, 4.9, 20, "5k", "food", 3, "large", "medium"));
-        list.add(new Product("Burger Stop", "Double Beef Burger", 32000, 4.8, 15, "5k", "food", 2, "normal", "simple"));
-        list.add(new Product("Pizza House", "Personal Pizza", 35000, 4.6, 25, "10k", "food", 2, "normal", "medium"));
-        list.add(new Product("Fresh Juice", "Fresh Fruit Ice", 8000, 4.7, 5, "Free", "beverage", 5, "large", "simple"));
-        list.add(new Product("Coffee Shop", "Palm Sugar Coffee", 12000, 4.9, 8, "2k", "beverage", 4, "normal", "simple"));
-        list.add(new Product("Tea House", "Jumbo Sweet Iced Tea", 5000, 4.4, 3, "Free", "beverage", 5, "large", "simple"));
-        list.add(new Product("Boba Store", "Brown Sugar Boba Milk", 20000, 4.8, 12, "5k", "beverage", 5, "large", "medium"));
-        return list;
+    // Cart events arrive on a mutating thread; Swing models may only change on the EDT. Every event is queued,
+    // even on the EDT, so events keep their order whichever thread delivers them.
+    static void onEdt(Runnable task) {
+        SwingUtilities.invokeLater(task);
     }
 
-    public List<Product> getByCategory(String category) {
-        List<Product> filtered = new ArrayList<>();
-        for (Product p : products) {
-            if (p.getCategory().equals(category)) filtered.add(p);
+    @Override
+    public void itemInserted(int index, CartEntry entry) {
+        onEdt(() -> {
+            rows.add(index, entry);
+            fireTableRowsInserted(index, index);
+        });
+    }
+
+    @Override
+    public void itemUpdated(int index, CartEntry entry) {
+        onEdt(() -> {
+            rows.set(index, entry);
+            fireTableRowsUpdated(index, index);
+        });
+    }
+
+    @Override
+    public void itemRemoved(int index, CartEntry entry) {
+        onEdt(() -> {
+            rows.remove(index);
+            fireTableRowsDeleted(index, index);
+        });
+    }
+
+    @Override
+    public void cleared() {
+        onEdt(() -> {
+            rows.clear();
+            fireTableDataChanged();
+        });
+    }
+
+    public CartEntry getEntry(int row) { return rows.get(row); }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return COLUMNS.length; }
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : column == 3 ? Long.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        CartEntry entry = rows.get(row);
+        switch (column) {
+            case 0: return entry.getProduct().getName();
+            case 1: return entry.getProduct().getSeller();
+            case 2: return entry.getQuantity();
+            default: return entry.getTotal();
+        }
+    }
+
+    @Override public boolean isCellEditable(int row, int column) { return column == 2; }
+
+    // Editing the quantity goes through the cart; the resulting event updates this row
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (value instanceof Integer && (Integer) value >= 0) {
+            cart.setQuantity(rows.get(row).getProduct().getKey(), (Integer) value);
         }
-        return filtered;
     }
 }
 
-// Cart Item - Represents single cart entry
-class CartEntry {
-    private Product product;
-    private int quantity;
+// Notification Bar - Non-blocking status message that clears itself after a few seconds
+class NotificationBar extends JLabel {
+    private final Timer hideTimer = new Timer(3000, e -> setText(" "));
 
-    public CartEntry(Product product, int quantity) {
-        this.product = product;
-        this.quantity = quantity;
+    NotificationBar() {
+        super(" ");
+        hideTimer.setRepeats(false);
+        setOpaque(true);
+        setBackground(UiTheme.RESULTS_BACKGROUND);
+        setForeground(UiTheme.PRIMARY);
+        setFont(UiTheme.CARD_TITLE_FONT);
+        setBorder(UiTheme.PADDING);
     }
 
-    public Product getProduct() { return product; }
-    public int getQuantity() { return quantity; }
-    public void setQuantity(int qty) { this.quantity = qty; }
-    public int getTotal() { return product.getPrice() * quantity; }
+    public void post(String message) {
+        setText(message);
+        hideTimer.restart();
+    }
 }
 
-// Shopping Cart - Manages cart operations
-class Cart {
-    private List<CartEntry> items;
+// Ranked List Model - The pages of a search loaded so far; later pages are appended as the list scrolls
+class RankedListModel extends AbstractListModel<Product> {
+    private final List<Product> rows = new ArrayList<>();
+
+    public void setResults(RankedResults results) {
+        int old = rows.size();
+        rows.clear();
+        if (old > 0) fireIntervalRemoved(this, 0, old - 1);
+        append(results);
+    }
 
-    public Cart() { this.items = new ArrayList<>(); }
+    public void append(RankedResults page) {
+        int from = rows.size();
+        rows.addAll(page.asList());
+        if (page.size() > 0) fireIntervalAdded(this, from, rows.size() - 1);
+    }
 
-    public void add(Product product, int qty) {
-        for (CartEntry item : items) {
-            if (item.getProduct().getName().equals(product.getName())) {
-                item.setQuantity(item.getQuantity() + qty);
-                return;
-            }
-        }
-        items.add(new CartEntry(product, qty));
+    @Override public int getSize() { return rows.size(); }
+    @Override public Product getElementAt(int index) { return rows.get(index); }
+}
+
+// Product Card Renderer - A single card component stamped onto every visible result cell
+class ProductCardRenderer extends JPanel implements ListCellRenderer<Product> {
+    // A fully populated card, for the list to measure cells with; the empty stamp has no text rows to measure
+    static final Product PROTOTYPE = new Product("Prototype Seller Kitchen", "Prototype Offer With A Long Name",
+        1_000_000, 5.0, 120, "10k", "food", 5, "large", "complex");
+
+    final JButton addButton = UiTheme.styleButton(new JButton("🛒 Add"), UiTheme.WARNING);
+    final JButton buyButton = UiTheme.styleButton(new JButton("✅ Buy"), UiTheme.SUCCESS);
+    private final JLabel seller = new JLabel();
+    private final JLabel rating = new JLabel();
+    private final JLabel name = new JLabel();
+    private final JLabel price = new JLabel();
+    private final JLabel info = new JLabel();
+    private final JPanel card = new JPanel(new BorderLayout());
+
+    ProductCardRenderer() {
+        super(new BorderLayout());
+        setBackground(UiTheme.RESULTS_BACKGROUND);
+        setBorder(UiTheme.CARD_MARGIN);
+
+        card.setBackground(Color.WHITE);
+        card.setBorder(UiTheme.CARD_BORDER);
+
+        JPanel header = new JPanel(new BorderLayout());
+        header.setBackground(UiTheme.PRIMARY);
+        header.setBorder(UiTheme.PADDING);
+        seller.setFont(UiTheme.CARD_TITLE_FONT);
+        seller.setForeground(Color.WHITE);
+        rating.setForeground(Color.WHITE);
+        header.add(seller, BorderLayout.WEST);
+        header.add(rating, BorderLayout.EAST);
+
+        JPanel body = new JPanel();
+        body.setLayout(new BoxLayout(body, BoxLayout.Y_AXIS));
+        body.setBackground(Color.WHITE);
+        body.setBorder(UiTheme.PADDING);
+        name.setFont(UiTheme.CARD_TITLE_FONT);
+        price.setFont(UiTheme.CARD_PRICE_FONT);
+        price.setForeground(UiTheme.SUCCESS);
+        info.setFont(UiTheme.CARD_INFO_FONT);
+        body.add(name);
+        body.add(Box.createRigidArea(new Dimension(0, 8)));
+        body.add(price);
+        body.add(Box.createRigidArea(new Dimension(0, 5)));
+        body.add(info);
+
+        JPanel buttons = new JPanel(new GridLayout(1, 2, 8, 0));
+        buttons.setBackground(Color.WHITE);
+        buttons.setBorder(UiTheme.BUTTON_ROW_PADDING);
+        buttons.add(addButton);
+        buttons.add(buyButton);
+        body.add(buttons);
+
+        card.add(header, BorderLayout.NORTH);
+        card.add(body, BorderLayout.CENTER);
+        add(card, BorderLayout.CENTER);
     }
 
-    public void remove(int index) {
-        if (index >= 0 && index < items.size()) items.remove(index);
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Product> list, Product product, int index,
+                                                  boolean selected, boolean focused) {
+        seller.setText(product.getSeller());
+        rating.setText(String.format("⭐ %.1f", product.getRating()));
+        name.setText(product.getName());
+        price.setText(String.format("💰 IDR %,d", product.getPrice()));
+        info.setText(String.format("⏱️ %d min | 🚚 %s", product.getDeliveryTime(), product.getDelivery()));
+        // The selection is the keyboard cursor that Enter and Ctrl+Enter act on
+        card.setBorder(selected ? UiTheme.CARD_SELECTED_BORDER : UiTheme.CARD_BORDER);
+        return this;
     }
 
-    public List<CartEntry> getItems() { return items; }
-    public int getTotal() {
-        return items.stream().mapToInt(CartEntry::getTotal).sum();
+    // Lays the stamp out at a cell's size and returns the component under a cell-relative point
+    Component componentAt(Rectangle cell, int x, int y) {
+        setBounds(cell);
+        layoutTree(this);
+        return SwingUtilities.getDeepestComponentAt(this, x, y);
     }
 
-    public void clear() { items.clear(); }
-    public int count() { return items.size(); }
+    private static void layoutTree(Container container) {
+        container.doLayout();
+        for (Component child : container.getComponents()) {
+            if (child instanceof Container) layoutTree((Container) child);
+        }
+    }
 }
 
 // Main GUI - Product Tender System
 public class BuyerTenderSystem extends JFrame {
-    private ProductDAO db;
+    // Results are fetched a page at a time; the next page loads once the list scrolls near its end
+    private static final int PAGE_SIZE = 48;
+    private static final int PAGE_PREFETCH = 8;
+
+    private TenderService service;
     private Cart cart;
-    private SearchRequest currentSearch;
+    private TenderResult currentSearch;
+    private RankedResults currentResults;
     private JTextArea searchInput;
     private JPanel productsDisplay;
+    private RankedListModel resultsModel;
+    private JList<Product> resultsList;
+    private long renderStart;   // set by displayProducts; 0 once the new results have been painted
+    private ProductCardRenderer cardRenderer;
     private JLabel cartLabel;
+    private NotificationBar notifications;
+    private CartTableModel cartModel;
+    private JDialog cartDialog;
+    private JProgressBar searchProgress;
+    private JComboBox<String> sortChoice;
+    private Timer typingTimer;
+    private ExecutorService searchExecutor;
+    private Future<?> runningSearch;
+    private SearchRequest runningRequest;   // the latest search, kept to page through its results
+    private long searchGeneration;
+    private boolean morePages, pageLoading;
 
     public BuyerTenderSystem() {
-        db = new ProductDAO();
+        service = new TenderService();
         cart = new Cart();
+        searchExecutor = TenderService.newExecutor("search-worker");
         initializeFrame();
     }
 
@@ -215,28 +4076,35 @@ public class BuyerTenderSystem extends JFrame {
     private void buildUI() {
         add(createHeader(), BorderLayout.NORTH);
         add(createLeftPanel(), BorderLayout.WEST);
-        JScrollPane center = new JScrollPane(createCenterPanel());
-        add(center, BorderLayout.CENTER);
+        add(createCenterPanel(), BorderLayout.CENTER);
+        notifications = new NotificationBar();
+        add(notifications, BorderLayout.SOUTH);
         showEmptyState();
     }
 
     private JPanel createHeader() {
         JPanel panel = new JPanel(new BorderLayout());
-        panel.setBackground(new Color(37, 99, 235));
+        panel.setBackground(UiTheme.PRIMARY);
         panel.setPreferredSize(new Dimension(0, 80));
-        panel.setBorder(BorderFactory.createEmptyBorder(15, 20, 15, 20));
+        panel.setBorder(UiTheme.HEADER_PADDING);
 
         JLabel title = new JLabel("Product Tender System");
-        title.setFont(new Font("Arial", Font.BOLD, 26));
+        title.setFont(UiTheme.TITLE_FONT);
         title.setForeground(Color.WHITE);
 
         JPanel right = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
-        right.setBackground(new Color(37, 99, 235));
+        right.setBackground(UiTheme.PRIMARY);
         
-        JButton cartBtn = createButton("🛒 View Cart", new Color(34, 197, 94), e -> showCart());
+        JButton cartBtn = createButton("🛒 View Cart", UiTheme.SUCCESS, e -> showCart());
         cartLabel = new JLabel("(0 items)");
-        cartLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        cartLabel.setFont(UiTheme.LABEL_FONT);
         cartLabel.setForeground(Color.WHITE);
+        cart.addListener(new CartListener() {
+            @Override
+            public void totalChanged(long total, int count) {
+                CartTableModel.onEdt(() -> cartLabel.setText("(" + count + " items)"));
+            }
+        });
 
         right.add(cartBtn);
         right.add(cartLabel);
@@ -249,28 +4117,57 @@ public class BuyerTenderSystem extends JFrame {
     private JPanel createLeftPanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 5));
         panel.setPreferredSize(new Dimension(300, 0));
-        panel.setBackground(new Color(245, 247, 250));
-        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        panel.setBackground(UiTheme.PANEL_BACKGROUND);
+        panel.setBorder(UiTheme.PANEL_PADDING);
 
         JLabel title = new JLabel("🔍 Search Products");
-        title.setFont(new Font("Arial", Font.BOLD, 18));
-        title.setForeground(new Color(37, 99, 235));
+        title.setFont(UiTheme.HEADING_FONT);
+        title.setForeground(UiTheme.PRIMARY);
 
         searchInput = new JTextArea(5, 20);
         searchInput.setLineWrap(true);
         searchInput.setWrapStyleWord(true);
-        searchInput.setFont(new Font("Arial", Font.PLAIN, 13));
-        searchInput.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(37, 99, 235), 2),
-            BorderFactory.createEmptyBorder(8, 8, 8, 8)));
+        searchInput.setFont(UiTheme.INPUT_FONT);
+        searchInput.setBorder(UiTheme.INPUT_BORDER);
 
-        JButton searchBtn = createButton("🚀 Search", new Color(37, 99, 235), e -> performSearch());
+        // Search-as-you-type: restart a short timer on every edit, search once typing pauses
+        typingTimer = new Timer(300, e -> {
+            String query = searchInput.getText().trim();
+            if (!query.isEmpty()) submitSearch(query);
+        });
+        typingTimer.setRepeats(false);
+        searchInput.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { typingTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { typingTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+
+        JButton searchBtn = createButton("🚀 Search", UiTheme.PRIMARY, e -> performSearch());
         searchBtn.setPreferredSize(new Dimension(0, 45));
 
+        searchProgress = new JProgressBar();
+        searchProgress.setIndeterminate(true);
+        searchProgress.setString("Searching...");
+        searchProgress.setStringPainted(true);
+        searchProgress.setVisible(false);
+
+        sortChoice = new JComboBox<>(new String[] {"Sort: Best match", "Sort: Lowest total (incl. delivery)"});
+        sortChoice.setFont(UiTheme.CONTROL_FONT);
+        sortChoice.addActionListener(e -> {
+            String query = searchInput.getText().trim();
+            if (!query.isEmpty()) submitSearch(query);
+        });
+
+        JPanel actions = new JPanel(new BorderLayout(5, 5));
+        actions.setBackground(UiTheme.PANEL_BACKGROUND);
+        actions.add(searchProgress, BorderLayout.NORTH);
+        actions.add(sortChoice, BorderLayout.CENTER);
+        actions.add(searchBtn, BorderLayout.SOUTH);
+
         JPanel center = new JPanel(new BorderLayout(5, 5));
-        center.setBackground(new Color(245, 247, 250));
+        center.setBackground(UiTheme.PANEL_BACKGROUND);
         center.add(new JScrollPane(searchInput), BorderLayout.CENTER);
-        center.add(searchBtn, BorderLayout.SOUTH);
+        center.add(actions, BorderLayout.SOUTH);
 
         JPanel tips = createTipsPanel();
 
@@ -283,35 +4180,125 @@ public class BuyerTenderSystem extends JFrame {
     private JPanel createTipsPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
-        panel.setBackground(new Color(245, 247, 250));
-        panel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(new Color(191, 219, 254), 1),
-            BorderFactory.createEmptyBorder(10, 10, 10, 10)));
+        panel.setBackground(UiTheme.PANEL_BACKGROUND);
+        panel.setBorder(UiTheme.TIPS_BORDER);
 
         JLabel title = new JLabel("💡 Tips");
-        title.setFont(new Font("Arial", Font.BOLD, 11));
-        title.setForeground(new Color(37, 99, 235));
+        title.setFont(UiTheme.TIPS_TITLE_FONT);
+        title.setForeground(UiTheme.PRIMARY);
 
-        String[] tips = {"Use 'cheap' for budget", "Use 'fast' for quick delivery", "Mention category: food, beverage"};
+        String[] tips = {"Use 'cheap' for budget", "Use 'fast' for quick delivery", "Mention category: food, beverage", "Or name a dish or shop: 'burger', 'boba'",
+                         "Arrow keys pick a card: Enter adds it, Ctrl+Enter buys"};
         panel.add(title);
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
         for (String tip : tips) {
             JLabel label = new JLabel("• " + tip);
-            label.setFont(new Font("Arial", Font.PLAIN, 10));
-            label.setForeground(new Color(71, 85, 105));
+            label.setFont(UiTheme.TIPS_FONT);
+            label.setForeground(UiTheme.MUTED_TEXT);
             panel.add(label);
         }
         return panel;
     }
 
+    // Results are a virtualized two-column JList: only visible cells are painted, all with one renderer
     private JPanel createCenterPanel() {
-        productsDisplay = new JPanel();
-        productsDisplay.setLayout(new GridLayout(0, 2, 15, 15));
-        productsDisplay.setBackground(new Color(239, 246, 255));
-        productsDisplay.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        resultsModel = new RankedListModel();
+        cardRenderer = new ProductCardRenderer();
+        resultsList = new JList<Product>(resultsModel) {
+            // PAINT runs from displayProducts to the end of the first paint showing its results
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                if (renderStart != 0) {
+                    TenderMetrics.get().record(TenderMetrics.Stage.PAINT, System.nanoTime() - renderStart);
+                    renderStart = 0;
+                }
+            }
+        };
+        resultsList.setCellRenderer(cardRenderer);
+        resultsList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        resultsList.setVisibleRowCount(-1);
+        resultsList.setPrototypeCellValue(ProductCardRenderer.PROTOTYPE);   // fixes the cell size from a populated card
+        resultsList.setBackground(UiTheme.RESULTS_BACKGROUND);
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        // The card buttons are only painted, so the keyboard reaches them through the list: arrows move the
+        // selection, Enter adds the selected card to the cart and Ctrl+Enter buys it
+        InputMap keys = resultsList.getInputMap(JComponent.WHEN_FOCUSED);
+        keys.put(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_ENTER, 0), "addToCart");
+        keys.put(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_ENTER, java.awt.event.InputEvent.CTRL_DOWN_MASK), "buyNow");
+        resultsList.getActionMap().put("addToCart", selectedCardAction(this::addToCart));
+        resultsList.getActionMap().put("buyNow", selectedCardAction(this::buyNow));
+
+        java.awt.event.MouseAdapter mouse = new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                Component hit = cardComponentAt(e.getPoint());
+                if (hit == null) return;
+                Product product = resultsModel.getElementAt(resultsList.locationToIndex(e.getPoint()));
+                if (hit == cardRenderer.addButton) addToCart(product);
+                else if (hit == cardRenderer.buyButton) buyNow(product);
+            }
+
+            @Override
+            public void mouseMoved(java.awt.event.MouseEvent e) {
+                Component hit = cardComponentAt(e.getPoint());
+                resultsList.setCursor(hit instanceof JButton ? UiTheme.HAND : Cursor.getDefaultCursor());
+            }
+        };
+        resultsList.addMouseListener(mouse);
+        resultsList.addMouseMotionListener(mouse);
+
+        JScrollPane scroll = new JScrollPane(resultsList);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        scroll.getViewport().setBackground(UiTheme.RESULTS_BACKGROUND);
+        scroll.getVerticalScrollBar().setUnitIncrement(24);
+        scroll.getViewport().addChangeListener(e -> loadNextPageIfNeeded());
+        // Two cards per row, stretched to the viewport width like the old GridLayout
+        scroll.getViewport().addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentResized(java.awt.event.ComponentEvent e) {
+                int width = scroll.getViewport().getWidth() / 2;
+                if (width > 0 && width != resultsList.getFixedCellWidth()) resultsList.setFixedCellWidth(width);
+            }
+        });
+
+        productsDisplay = new JPanel(new CardLayout());
+        productsDisplay.setBackground(UiTheme.RESULTS_BACKGROUND);
+        productsDisplay.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JPanel empty = new JPanel(new GridBagLayout());
+        empty.setBackground(UiTheme.RESULTS_BACKGROUND);
+        JLabel label = new JLabel("<html><center>🛍️ No Products Yet<br><br>Search for products to get started!</center></html>");
+        label.setFont(UiTheme.EMPTY_FONT);
+        label.setForeground(UiTheme.EMPTY_TEXT);
+        empty.add(label);
+
+        productsDisplay.add(empty, "empty");
+        productsDisplay.add(scroll, "results");
         return productsDisplay;
     }
 
+    private Action selectedCardAction(java.util.function.Consumer<Product> action) {
+        return new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                Product product = resultsList.getSelectedValue();
+                if (product != null) action.accept(product);
+            }
+        };
+    }
+
+    // The renderer is only a stamp, so clicks are hit-tested against it laid out at the clicked cell
+    private Component cardComponentAt(Point point) {
+        int index = resultsList.locationToIndex(point);
+        if (index < 0) return null;
+        Rectangle cell = resultsList.getCellBounds(index, index);
+        if (cell == null || !cell.contains(point)) return null;
+        cardRenderer.getListCellRendererComponent(resultsList, resultsModel.getElementAt(index), index, false, false);
+        return cardRenderer.componentAt(cell, point.x - cell.x, point.y - cell.y);
+    }
+
     private void performSearch() {
         String query = searchInput.getText().trim();
         if (query.isEmpty()) {
@@ -319,98 +4306,98 @@ public class BuyerTenderSystem extends JFrame {
             return;
         }
 
-        currentSearch = new SearchRequest(query);
-        List<Product> categoryProducts = db.getByCategory(currentSearch.getCategory());
-        currentSearch.addProducts(categoryProducts);
-        displayProducts();
-        searchInput.setText("");
+        submitSearch(query);
     }
 
-    private void displayProducts() {
-        productsDisplay.removeAll();
-        productsDisplay.setLayout(new GridLayout(0, 2, 15, 15));
-
-        if (currentSearch == null || currentSearch.getResults().isEmpty()) {
-            showEmptyState();
-            return;
-        }
-
-        for (Product p : currentSearch.getTopResults(6)) {
-            productsDisplay.add(createProductCard(p));
-        }
+    // Runs parsing, lookup, scoring and ranking off the EDT; a newer search cancels this one
+    private void submitSearch(String query) {
+        typingTimer.stop();
+        // The flag stops fork-join scoring of the old request; the interrupt wakes its submitting thread
+        if (runningRequest != null) runningRequest.cancel();
+        if (runningSearch != null) runningSearch.cancel(true);
+        long generation = ++searchGeneration;
+        morePages = false;
+        pageLoading = false;
+        SortKey sortKey = sortChoice.getSelectedIndex() == 1 ? SortKey.TOTAL_PRICE : SortKey.BEST_MATCH;
+        SearchRequest request = service.newRequest(query, sortKey, Integer.MAX_VALUE);
+        runningRequest = request;
+        searchProgress.setVisible(true);
 
-        productsDisplay.revalidate();
-        productsDisplay.repaint();
+        runningSearch = searchExecutor.submit(() -> {
+            try {
+                TenderResult result = service.search(request, PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != searchGeneration) return;
+                    currentSearch = result;
+                    currentResults = result.getResults();
+                    morePages = currentResults.size() == PAGE_SIZE;
+                    searchProgress.setVisible(false);
+                    displayProducts();
+                });
+            } catch (CancellationException e) {
+                // superseded by a newer query
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != searchGeneration) return;
+                    searchProgress.setVisible(false);
+                    JOptionPane.showMessageDialog(this, "Search failed: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
     }
 
-    private JPanel createProductCard(Product product) {
-        JPanel card = new JPanel(new BorderLayout());
-        card.setBackground(Color.WHITE);
-        card.setBorder(BorderFactory.createLineBorder(new Color(191, 219, 254), 2));
-
-        JPanel header = new JPanel(new BorderLayout());
-        header.setBackground(new Color(37, 99, 235));
-        header.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        JLabel seller = new JLabel(product.getSeller());
-        seller.setFont(new Font("Arial", Font.BOLD, 13));
-        seller.setForeground(Color.WHITE);
-
-        JLabel rating = new JLabel(String.format("⭐ %.1f", product.getRating()));
-        rating.setForeground(Color.WHITE);
-
-        header.add(seller, BorderLayout.WEST);
-        header.add(rating, BorderLayout.EAST);
-
-        JPanel body = new JPanel();
-        body.setLayout(new BoxLayout(body, BoxLayout.Y_AXIS));
-        body.setBackground(Color.WHITE);
-        body.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        JLabel name = new JLabel(product.getName());
-        name.setFont(new Font("Arial", Font.BOLD, 13));
-
-        JLabel price = new JLabel(String.format("💰 IDR %,d", product.getPrice()));
-        price.setFont(new Font("Arial", Font.BOLD, 15));
-        price.setForeground(new Color(34, 197, 94));
-
-        JLabel info = new JLabel(String.format("⏱️ %d min | 🚚 %s", product.getDeliveryTime(), product.getDelivery()));
-        info.setFont(new Font("Arial", Font.PLAIN, 10));
-
-        body.add(name);
-        body.add(Box.createRigidArea(new Dimension(0, 8)));
-        body.add(price);
-        body.add(Box.createRigidArea(new Dimension(0, 5)));
-        body.add(info);
-
-        JPanel buttons = new JPanel(new GridLayout(1, 2, 8, 0));
-        buttons.setBackground(Color.WHITE);
-        buttons.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
+    // Fetches the next page once the last loaded cards scroll into view
+    private void loadNextPageIfNeeded() {
+        if (!morePages || pageLoading || resultsList.getLastVisibleIndex() < resultsModel.getSize() - PAGE_PREFETCH) return;
+        pageLoading = true;
+        SearchRequest request = runningRequest;
+        long generation = searchGeneration;
+        int shown = resultsModel.getSize();
+        runningSearch = searchExecutor.submit(() -> {
+            try {
+                RankedResults page = service.nextPage(request, shown, PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != searchGeneration) return;
+                    pageLoading = false;
+                    morePages = page.size() == PAGE_SIZE;
+                    resultsModel.append(page);
+                });
+            } catch (CancellationException e) {
+                // superseded by a newer query
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != searchGeneration) return;
+                    pageLoading = false;
+                    morePages = false;
+                    notifications.post("⚠️ Could not load more results: " + e.getMessage());
+                });
+            }
+        });
+    }
 
-        buttons.add(createButton("🛒 Add", new Color(234, 179, 8), e -> addToCart(product)));
-        buttons.add(createButton("✅ Buy", new Color(34, 197, 94), e -> buyNow(product)));
+    private void displayProducts() {
+        long start = System.nanoTime();
+        if (currentResults == null || currentResults.isEmpty()) {
+            showEmptyState();
+            return;
+        }
 
-        body.add(buttons);
-        card.add(header, BorderLayout.NORTH);
-        card.add(body, BorderLayout.CENTER);
-        return card;
+        resultsModel.setResults(currentResults);
+        resultsList.clearSelection();
+        resultsList.ensureIndexIsVisible(0);
+        ((CardLayout) productsDisplay.getLayout()).show(productsDisplay, "results");
+        renderStart = resultsList.isShowing() ? start : 0;   // a hidden list would only paint, and record, once shown again
     }
 
     private JButton createButton(String text, Color bg, java.awt.event.ActionListener action) {
-        JButton btn = new JButton(text);
-        btn.setFont(new Font("Arial", Font.BOLD, 11));
-        btn.setBackground(bg);
-        btn.setForeground(Color.WHITE);
-        btn.setFocusPainted(false);
-        btn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        JButton btn = UiTheme.styleButton(new JButton(text), bg);
         btn.addActionListener(action);
         return btn;
     }
 
     private void addToCart(Product product) {
         cart.add(product, 1);
-        updateCartCount();
-        JOptionPane.showMessageDialog(this, product.getName() + " added to cart!", "Success", JOptionPane.INFORMATION_MESSAGE);
+        notifications.post("🛒 " + product.getName() + " added to cart");
     }
 
     private void buyNow(Product product) {
@@ -418,76 +4405,75 @@ public class BuyerTenderSystem extends JFrame {
             "Buy " + product.getName() + " for IDR " + product.getPrice() + "?",
             "Confirm Purchase", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            JOptionPane.showMessageDialog(this,
-                "Purchase successful!\nProduct: " + product.getName() +
-                "\nVendor: " + product.getSeller() + "\nDelivery: " + product.getDeliveryTime() + " min",
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            notifications.post(String.format("✅ Purchased %s from %s, arriving in %d min",
+                product.getName(), product.getSeller(), product.getDeliveryTime()));
         }
     }
 
+    // The cart window is built once and kept in sync by cart events, so it stays open while shopping
     private void showCart() {
-        JDialog dialog = new JDialog(this, "Shopping Cart", true);
+        if (cartDialog == null) cartDialog = createCartDialog();
+        cartDialog.setVisible(true);
+        cartDialog.toFront();
+    }
+
+    private JDialog createCartDialog() {
+        JDialog dialog = new JDialog(this, "Shopping Cart", false);
         dialog.setSize(500, 400);
         dialog.setLayout(new BorderLayout(10, 10));
+        dialog.setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
 
-        JPanel items = new JPanel();
-        items.setLayout(new BoxLayout(items, BoxLayout.Y_AXIS));
-        items.setBackground(new Color(245, 247, 250));
-        items.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        cartModel = new CartTableModel(cart);
+        JTable table = new JTable(cartModel);
+        table.setFont(UiTheme.TABLE_FONT);
+        table.setRowHeight(24);
+        table.getColumnModel().getColumn(0).setPreferredWidth(180);
+        table.getColumnModel().getColumn(2).setPreferredWidth(40);
 
-        if (cart.getItems().isEmpty()) {
-            JLabel empty = new JLabel("Your cart is empty");
-            empty.setFont(new Font("Arial", Font.PLAIN, 13));
-            items.add(empty);
-        } else {
-            for (int i = 0; i < cart.getItems().size(); i++) {
-                CartEntry entry = cart.getItems().get(i);
-                JPanel item = new JPanel(new BorderLayout(10, 0));
-                item.setBackground(Color.WHITE);
-                item.setBorder(BorderFactory.createCompoundBorder(
-                    BorderFactory.createLineBorder(new Color(191, 219, 254), 1),
-                    BorderFactory.createEmptyBorder(10, 10, 10, 10)));
-                item.setMaximumSize(new Dimension(Integer.MAX_VALUE, 70));
-
-                JLabel info = new JLabel(String.format("<html><b>%s</b><br>Qty: %d | IDR %,d</html>",
-                    entry.getProduct().getName(), entry.getQuantity(), entry.getTotal()));
-                info.setFont(new Font("Arial", Font.PLAIN, 11));
-
-                final int idx = i;
-                JButton remove = createButton("❌ Remove", new Color(239, 68, 68), e -> {
-                    cart.remove(idx);
-                    updateCartCount();
-                    dialog.dispose();
-                    showCart();
-                });
-                remove.setPreferredSize(new Dimension(80, 30));
-
-                item.add(info, BorderLayout.CENTER);
-                item.add(remove, BorderLayout.EAST);
-                items.add(item);
-                items.add(Box.createRigidArea(new Dimension(0, 8)));
-            }
-        }
-
-        JScrollPane scroll = new JScrollPane(items);
-        scroll.setBorder(BorderFactory.createEmptyBorder());
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(BorderFactory.createEmptyBorder(15, 15, 0, 15));
+        scroll.getViewport().setBackground(UiTheme.PANEL_BACKGROUND);
 
         JPanel bottom = new JPanel(new BorderLayout(10, 10));
         bottom.setBackground(Color.WHITE);
-        bottom.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        bottom.setBorder(UiTheme.PANEL_PADDING);
 
-        JLabel total = new JLabel("Total: IDR " + String.format("%,d", cart.getTotal()));
-        total.setFont(new Font("Arial", Font.BOLD, 18));
-        total.setForeground(new Color(37, 99, 235));
+        JLabel total = new JLabel();
+        total.setFont(UiTheme.HEADING_FONT);
+        total.setForeground(UiTheme.PRIMARY);
 
-        JPanel buttons = new JPanel(new GridLayout(1, 2, 10, 0));
-        buttons.add(createButton("Close", new Color(107, 114, 128), e -> dialog.dispose()));
-        buttons.add(createButton("Checkout", new Color(34, 197, 94), e -> {
-            JOptionPane.showMessageDialog(dialog, "Checkout successful!");
+        JButton remove = createButton("❌ Remove", UiTheme.DANGER, e -> {
+            int[] selected = table.getSelectedRows();
+            List<String> keys = new ArrayList<>(selected.length);
+            for (int row : selected) keys.add(cartModel.getEntry(table.convertRowIndexToModel(row)).getProduct().getKey());
+            for (String key : keys) cart.remove(key);
+        });
+        JButton checkout = createButton("Checkout", UiTheme.SUCCESS, e -> {
+            long paid = cart.getTotal();
             cart.clear();
-            updateCartCount();
-            dialog.dispose();
-        }));
+            dialog.setVisible(false);
+            notifications.post(String.format("✅ Checkout successful: IDR %,d", paid));
+        });
+
+        // Only the total label and button state follow total changes; rows update through the model
+        CartListener totals = new CartListener() {
+            @Override
+            public void totalChanged(long amount, int count) {
+                CartTableModel.onEdt(() -> {
+                    total.setText(count == 0 ? "Your cart is empty" : String.format("Total: IDR %,d", amount));
+                    checkout.setEnabled(count > 0);
+                });
+            }
+        };
+        cart.addListener(totals);
+        totals.totalChanged(cart.getTotal(), cart.count());
+        remove.setEnabled(false);
+        table.getSelectionModel().addListSelectionListener(e -> remove.setEnabled(table.getSelectedRowCount() > 0));
+
+        JPanel buttons = new JPanel(new GridLayout(1, 3, 10, 0));
+        buttons.add(remove);
+        buttons.add(createButton("Close", UiTheme.NEUTRAL, e -> dialog.setVisible(false)));
+        buttons.add(checkout);
 
         bottom.add(total, BorderLayout.NORTH);
         bottom.add(buttons, BorderLayout.SOUTH);
@@ -495,24 +4481,12 @@ public class BuyerTenderSystem extends JFrame {
         dialog.add(scroll, BorderLayout.CENTER);
         dialog.add(bottom, BorderLayout.SOUTH);
         dialog.setLocationRelativeTo(this);
-        dialog.setVisible(true);
+        return dialog;
     }
 
     private void showEmptyState() {
-        productsDisplay.removeAll();
-        productsDisplay.setLayout(new GridBagLayout());
-        
-        JLabel label = new JLabel("<html><center>🛍️ No Products Yet<br><br>Search for products to get started!</center></html>");
-        label.setFont(new Font("Arial", Font.BOLD, 16));
-        label.setForeground(new Color(147, 197, 253));
-        
-        productsDisplay.add(label);
-        productsDisplay.revalidate();
-        productsDisplay.repaint();
-    }
-
-    private void updateCartCount() {
-        cartLabel.setText("(" + cart.count() + " items)");
+        resultsModel.setResults(RankedResults.EMPTY);
+        ((CardLayout) productsDisplay.getLayout()).show(productsDisplay, "empty");
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,51 @@
+package tender;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cart Benchmarks - Adding offers and reading the running total
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmarks {
+    @Param({"1000", "100000"})
+    public int distinctOffers;
+
+    private Product[] offers;
+    private Cart cart;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Product> products = SyntheticCatalog.generate(distinctOffers, SyntheticCatalog.SEED);
+        offers = products.toArray(new Product[0]);
+        cart = new Cart();
+        for (Product p : offers) cart.add(p, 1);
+    }
+
+    @Benchmark
+    public long add() {
+        cart.add(offers[next++ % offers.length], 1);
+        return cart.count();
+    }
+
+    @Benchmark
+    public long getTotal() {
+        return cart.getTotal();
+    }
+}
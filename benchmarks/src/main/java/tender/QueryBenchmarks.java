@@ -0,0 +1,36 @@
+package tender;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Query Benchmarks - SearchRequest construction: keyword parsing and category detection
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmarks {
+    @Param({"cheap fast padang", "I need a big sweet iced tea delivered quickly and on a budget please", "charger"})
+    public String query;
+
+    @Benchmark
+    public SearchRequest newSearchRequest() {
+        return new SearchRequest(query);
+    }
+
+    @Benchmark
+    public long keywordScan() {
+        return KeywordDictionary.active().scan(query);
+    }
+}
@@ -0,0 +1,92 @@
+package tender;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Search Benchmarks - Catalog lookup, scoring and top-K ranking over synthetic catalogs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Lazy text indexes: no background index build competes with, or allocates during, the measured searches
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g", "-Dtender.textIndex=lazy"})
+public class SearchBenchmarks {
+    private static final String QUERY = "cheap fast simple food";
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private ProductDAO db;
+    private CatalogSegment segment;
+    private List<Product> offers;
+    private int criteria;
+    private ScoringProfile profile;
+
+    @Setup
+    public void setUp() {
+        db = new ProductDAO(SyntheticCatalog.generate(catalogSize, SyntheticCatalog.SEED));
+        SearchRequest request = new SearchRequest(QUERY);
+        segment = db.getSegment(request.getCategory());
+        offers = db.getByCategory(request.getCategory());
+        criteria = request.getCriteriaMask();
+        profile = request.getProfile();
+    }
+
+    @Benchmark
+    public List<Product> getByCategory() {
+        return db.getByCategory("food");
+    }
+
+    @Benchmark
+    public int calculateMatchScore() {
+        int sum = 0;
+        for (int i = 0; i < offers.size(); i++) sum += offers.get(i).calculateMatchScore(criteria, profile);
+        return sum;
+    }
+
+    @Benchmark
+    public int segmentColumnScore() {
+        int sum = 0;
+        for (int i = 0, n = segment.size(); i < n; i++) sum += segment.score(i, criteria, profile);
+        return sum;
+    }
+
+    @Benchmark
+    public void addProductsTopResults(Blackhole bh) {
+        SearchRequest request = new SearchRequest(QUERY);
+        request.setParallelThreshold(Integer.MAX_VALUE);
+        request.addProducts(offers);
+        bh.consume(request.getTopResults(6));
+    }
+
+    @Benchmark
+    public void addSegmentTopResults(Blackhole bh) {
+        SearchRequest request = new SearchRequest(QUERY);
+        request.setParallelThreshold(Integer.MAX_VALUE);
+        request.addSegment(segment);
+        bh.consume(request.getTopResults(6));
+    }
+
+    // Same as addSegmentTopResults but always forks; compare the two for parallel speedup
+    @Benchmark
+    public void addSegmentTopResultsParallel(Blackhole bh) {
+        SearchRequest request = new SearchRequest(QUERY);
+        request.setParallelThreshold(1);
+        request.addSegment(segment);
+        bh.consume(request.getTopResults(6));
+    }
+}
@@ -0,0 +1,35 @@
+package tender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic Catalog - Deterministic offers for benchmarks; the same seed always yields the same catalog
+final class SyntheticCatalog {
+    static final long SEED = 20260417L;
+    private static final String[] CATEGORIES = {"food", "food", "food", "padang", "beverage", "beverage", "electronics"};
+    private static final String[] DELIVERY = {"Free", "Free", "2k", "5k", "10k"};
+    private static final String[] PORTIONS = {"small", "normal", "normal", "large"};
+    private static final String[] COMPLEXITY = {"simple", "simple", "medium", "complex"};
+
+    private SyntheticCatalog() {}
+
+    static List<Product> generate(int size, long seed) {
+        Random random = new Random(seed);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product(
+                "Seller " + random.nextInt(Math.max(1, size / 20)),
+                "Offer " + i,
+                3000 + random.nextInt(60) * 500,
+                3.5 + random.nextInt(16) / 10.0,
+                3 + random.nextInt(45),
+                DELIVERY[random.nextInt(DELIVERY.length)],
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                1 + random.nextInt(5),
+                PORTIONS[random.nextInt(PORTIONS.length)],
+                COMPLEXITY[random.nextInt(COMPLEXITY.length)]));
+        }
+        return products;
+    }
+}
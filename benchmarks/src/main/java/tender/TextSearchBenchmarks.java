@@ -0,0 +1,47 @@
+package tender;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Text Search Benchmarks - Inverted index lookups: exact, typo and prefix words against one segment
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-Dtender.textIndex=lazy"})
+public class TextSearchBenchmarks {
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    // a seller name, a misspelt seller name, and an offer-number prefix
+    @Param({"seller 42", "seler 42", "offer 1234"})
+    public String query;
+
+    private TextIndex index;
+    private List<String> words;
+
+    @Setup
+    public void setUp() {
+        ProductDAO db = new ProductDAO(SyntheticCatalog.generate(catalogSize, SyntheticCatalog.SEED));
+        index = db.getSegment("food").textIndex();
+        words = TextIndex.tokenize(query);
+    }
+
+    @Benchmark
+    public TextIndex.Hits search() {
+        return index.search(words);
+    }
+}
@@ -0,0 +1,129 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+// Cart Test - Merging by offer key, running totals and listener events that replay the cart,
+// one thread or several
+class CartTest {
+    private static Product offer(String seller, String name, int price) {
+        return new Product(seller, name, price, 4.5, 10, "Free", "food", 2, "normal", "simple");
+    }
+
+    @Test
+    void sameOfferMergesAndTotalTracksQuantities() {
+        Cart cart = new Cart();
+        cart.add(offer("Warung", "Fried Rice", 15000), 1);
+        cart.add(offer("Warung", "Fried Rice", 15000), 2);
+        cart.add(offer("Kedai", "Fried Rice", 14000), 1);
+        assertEquals(2, cart.count());
+        assertEquals(3, cart.get(Product.key("Warung", "Fried Rice")).getQuantity());
+        assertEquals(59000, cart.getTotal());
+        assertThrows(IllegalArgumentException.class, () -> cart.add(offer("Warung", "Fried Rice", 15000), 0));
+    }
+
+    @Test
+    void separatorsInNamesNeverMergeDistinctOffers() {
+        Cart cart = new Cart();
+        cart.add(offer("A/B", "C", 1000), 1);
+        cart.add(offer("A", "B/C", 2000), 1);
+        assertEquals(2, cart.count());
+        assertEquals(3000, cart.getTotal());
+    }
+
+    @Test
+    void quantityZeroRemovesAndUnknownKeysAreIgnored() {
+        Cart cart = new Cart();
+        Product rice = offer("Warung", "Fried Rice", 15000);
+        cart.add(rice, 2);
+        assertTrue(cart.setQuantity(rice.getKey(), 5));
+        assertEquals(75000, cart.getTotal());
+        assertTrue(cart.setQuantity(rice.getKey(), 0));
+        assertNull(cart.get(rice.getKey()));
+        assertEquals(0, cart.getTotal());
+        assertFalse(cart.setQuantity(rice.getKey(), 1));
+        assertFalse(cart.remove(rice.getKey()));
+    }
+
+    @Test
+    void listenerEventsReplayToTheCartContents() {
+        Cart cart = new Cart();
+        List<CartEntry> mirror = new ArrayList<>();
+        long[] total = new long[1];
+        mirror.addAll(cart.addListener(new CartListener() {
+            @Override public void itemInserted(int index, CartEntry entry) { mirror.add(index, entry); }
+            @Override public void itemUpdated(int index, CartEntry entry) { mirror.set(index, entry); }
+            @Override public void itemRemoved(int index, CartEntry entry) { assertEquals(entry.getProduct(), mirror.remove(index).getProduct()); }
+            @Override public void cleared() { mirror.clear(); }
+            @Override public void totalChanged(long t, int count) { total[0] = t; }
+        }));
+
+        Random random = new Random(3);
+        Product[] offers = new Product[40];
+        for (int i = 0; i < offers.length; i++) offers[i] = offer("Seller " + i % 7, "Offer " + i, 1000 + 500 * i);
+        for (int step = 0; step < 5000; step++) {
+            Product p = offers[random.nextInt(offers.length)];
+            int op = random.nextInt(10);
+            if (op < 5) cart.add(p, 1 + random.nextInt(3));
+            else if (op < 7) cart.setQuantity(p.getKey(), random.nextInt(4));
+            else if (op < 9) cart.remove(p.getKey());
+            else if (step % 500 == 0) cart.clear();
+
+            List<CartEntry> items = cart.getItems();
+            assertEquals(items.size(), mirror.size());
+            for (int i = 0; i < items.size(); i++) assertEquals(items.get(i), mirror.get(i));
+            assertEquals(cart.getTotal(), total[0]);
+        }
+    }
+
+    // Listeners run one at a time outside the cart's lock; the events still replay every row in order
+    @Test
+    void concurrentMutationsReplayInOrder() throws InterruptedException {
+        Cart cart = new Cart();
+        List<CartEntry> mirror = new ArrayList<>();
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        cart.addListener(new CartListener() {
+            @Override public void itemInserted(int index, CartEntry entry) { enter(); mirror.add(index, entry); leave(); }
+            @Override public void itemUpdated(int index, CartEntry entry) { enter(); mirror.set(index, entry); leave(); }
+            @Override public void itemRemoved(int index, CartEntry entry) { enter(); mirror.remove(index); leave(); }
+            @Override public void cleared() { mirror.clear(); }
+            @Override public void totalChanged(long t, int count) {}
+
+            // Failures on the mutating threads would go unseen; count them and check after the join
+            private void enter() { if (inside.incrementAndGet() != 1) overlaps.incrementAndGet(); }
+            private void leave() { inside.decrementAndGet(); }
+        });
+
+        Product[] offers = new Product[2000];
+        for (int i = 0; i < offers.length; i++) offers[i] = offer("Seller " + i % 13, "Offer " + i, 1000 + i);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                for (int step = 0; step < 20000; step++) {
+                    Product p = offers[random.nextInt(offers.length)];
+                    int op = random.nextInt(3);
+                    if (op == 0) cart.add(p, 1);
+                    else if (op == 1) cart.setQuantity(p.getKey(), random.nextInt(3));
+                    else cart.remove(p.getKey());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(0, overlaps.get());
+        assertEquals(cart.getItems(), mirror);
+    }
+}
@@ -0,0 +1,86 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Catalog File Test - Offers written to the binary catalog read back identically through the mapped columns
+class CatalogFileTest {
+    private static final List<Product> OFFERS = SyntheticCatalog.generate(6_000, 5);
+
+    @Test
+    void mappedSegmentsRoundTripEveryColumn(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.tndr");
+        CatalogFile.write(OFFERS, file);
+        Map<String, CatalogSegment> mapped = CatalogFile.open(file);
+        ProductDAO heap = new ProductDAO(OFFERS);
+        assertEquals(heap.getCategories(), mapped.keySet());
+
+        for (String category : heap.getCategories()) {
+            CatalogSegment expected = heap.getSegment(category);
+            CatalogSegment actual = mapped.get(category);
+            assertEquals(expected.size(), actual.size());
+            for (int row = 0; row < actual.size(); row++) {
+                assertEquals(describe(expected.product(row)), describe(actual.product(row)));
+                assertEquals(expected.totalPrice(row), actual.totalPrice(row));
+                assertEquals(expected.score(row, Criteria.CHEAPEST | Criteria.SWEET, ScoringProfile.DEFAULT),
+                             actual.score(row, Criteria.CHEAPEST | Criteria.SWEET, ScoringProfile.DEFAULT));
+                assertEquals(row, actual.rowOf(actual.product(row).getKey()));
+            }
+            assertEquals(-1, actual.rowOf(Product.key("Nobody", "Nothing")));
+            for (int max = 2_000; max <= 45_000; max += 2_500) {
+                assertEquals(expected.countTotalPriceAtMost(max), actual.countTotalPriceAtMost(max));
+            }
+        }
+    }
+
+    @Test
+    void mappedCatalogAnswersSearchesLikeTheHeapCatalog(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.tndr");
+        CatalogFile.write(OFFERS, file);
+        ProductDAO mapped = new ProductDAO(file);
+        ProductDAO heap = new ProductDAO(OFFERS);
+        for (String query : new String[] {"cheap fast food", "sweet drink", "large padang", "simple charger", "offer 42"}) {
+            assertEquals(search(heap, query, 9_000), search(mapped, query, 9_000), query);
+            assertEquals(search(heap, query, Integer.MAX_VALUE), search(mapped, query, Integer.MAX_VALUE), query);
+        }
+    }
+
+    @Test
+    void mappedCatalogIndexesTextOnFirstTextSearch(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.tndr");
+        CatalogFile.write(OFFERS, file);
+        ProductDAO mapped = new ProductDAO(file);
+        for (CatalogSegment segment : mapped.snapshot().getSegments()) assertFalse(segment.isTextIndexed(), segment.getCategory());
+        search(mapped, "cheap fast", Integer.MAX_VALUE);
+        assertFalse(mapped.getSegment("food").isTextIndexed(), "no free-text terms, so no index");
+        search(mapped, "offer 42 drink", Integer.MAX_VALUE);
+        assertTrue(mapped.getSegment("beverage").isTextIndexed());
+        assertFalse(mapped.getSegment("food").isTextIndexed(), "the query named its category");
+    }
+
+    private static List<String> search(ProductDAO db, String query, int maxTotalPrice) {
+        SearchRequest request = new SearchRequest(query);
+        request.setMaxTotalPrice(maxTotalPrice);
+        SearchCache.addCandidates(request, db.snapshot());
+        List<String> keys = new ArrayList<>();
+        for (Product p : request.getTopResults(100)) keys.add(p.getKey());
+        assertTrue(!keys.isEmpty(), query);
+        return keys;
+    }
+
+    static String describe(Product p) {
+        return String.join("|", p.getSeller(), p.getName(), p.getCategory(), p.getDelivery(), String.valueOf(p.getPrice()),
+            String.valueOf(p.getRating()), String.valueOf(p.getDeliveryTime()), String.valueOf(p.getSweetness()),
+            p.getPortion().name(), p.getComplexity().name());
+    }
+}
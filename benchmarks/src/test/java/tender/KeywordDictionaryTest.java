@@ -0,0 +1,76 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Keyword Dictionary Test - Aho-Corasick scanning, category priority and file loading
+class KeywordDictionaryTest {
+    private final KeywordDictionary dict = KeywordDictionary.defaults();
+
+    @Test
+    void scanCollectsCriteriaAndCategoryInOnePass() {
+        long scan = dict.scan("Cheap FAST padang please");
+        assertEquals(Criteria.CHEAPEST | Criteria.FASTEST, KeywordDictionary.criteriaOf(scan));
+        assertTrue(dict.hasCategory(scan));
+        assertEquals("padang", dict.categoryOf(scan));
+    }
+
+    @Test
+    void earlierCategoryWinsAndDefaultAppliesWhenNoneMatches() {
+        assertEquals("padang", dict.categoryOf(dict.scan("coffee with rendang")));
+        long none = dict.scan("something sweet");
+        assertFalse(dict.hasCategory(none));
+        assertEquals("food", dict.categoryOf(none));
+        assertEquals(Criteria.SWEET, KeywordDictionary.criteriaOf(none));
+    }
+
+    @Test
+    void overlappingTermsAreAllReported(@TempDir Path dir) throws IOException {
+        // "she", "he" and "hers" all occur inside "ushers"; only the failure links find the last two
+        KeywordDictionary overlap = parse(dir, "criterion sweet = she", "criterion large = hers", "criterion simple = he");
+        assertEquals(Criteria.SWEET | Criteria.LARGE | Criteria.SIMPLE, KeywordDictionary.criteriaOf(overlap.scan("ushers")));
+    }
+
+    @Test
+    void isTermMatchesWholeTokensOnly() {
+        assertTrue(dict.isTerm("lot"));
+        assertTrue(dict.isTerm("Coffee"));
+        assertFalse(dict.isTerm("pilot"));
+        assertFalse(dict.isTerm("lo"));
+    }
+
+    @Test
+    void loadsSynonymsFromFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("keywords.txt");
+        Files.write(file, Arrays.asList("# comment", "", "criterion cheapest = murah, hemat", "category beverage = kopi",
+                                        "default padang"), StandardCharsets.UTF_8);
+        KeywordDictionary loaded = KeywordDictionary.load(file);
+        long scan = loaded.scan("kopi murah");
+        assertEquals(Criteria.CHEAPEST, KeywordDictionary.criteriaOf(scan));
+        assertEquals("beverage", loaded.categoryOf(scan));
+        assertEquals("padang", loaded.categoryOf(loaded.scan("nasi")));
+    }
+
+    @Test
+    void rejectsMalformedLines(@TempDir Path dir) throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> parse(dir, "criterion cheapest murah"));
+        assertThrows(IllegalArgumentException.class, () -> parse(dir, "criterion tasty = yummy"));
+    }
+
+    private static KeywordDictionary parse(Path dir, String... lines) throws IOException {
+        Path file = dir.resolve("keywords.txt");
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return KeywordDictionary.load(file);
+    }
+}
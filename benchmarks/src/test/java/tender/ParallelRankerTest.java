@@ -0,0 +1,58 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+// Parallel Ranker Test - Fork-join scoring and selection give the sequential ranking, pages included
+class ParallelRankerTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final List<Product> OFFERS = SyntheticCatalog.generate(200_000, 11);
+
+    @AfterAll
+    static void shutDown() { POOL.shutdown(); }
+
+    @Test
+    void parallelRankingMatchesSequential() {
+        ProductDAO db = new ProductDAO(OFFERS);
+        for (SortKey sortKey : SortKey.values()) {
+            SearchRequest sequential = request(db, sortKey, Integer.MAX_VALUE);
+            SearchRequest parallel = request(db, sortKey, 1);
+            assertEquals(keys(sequential.getTopResults(500)), keys(parallel.getTopResults(500)), sortKey.name());
+            for (int page = 0; page < 5; page++) {
+                assertEquals(keys(sequential.nextPage(250).asList()), keys(parallel.nextPage(250).asList()));
+            }
+        }
+    }
+
+    @Test
+    void cancelledRequestStopsScoring() {
+        SearchRequest request = new SearchRequest("cheap food");
+        request.setParallelThreshold(1);
+        request.setPool(POOL);
+        request.cancel();
+        assertThrows(CancellationException.class, () -> request.addProducts(OFFERS));
+    }
+
+    private static SearchRequest request(ProductDAO db, SortKey sortKey, int threshold) {
+        SearchRequest request = new SearchRequest("cheap fast food");
+        request.setSortKey(sortKey);
+        request.setParallelThreshold(threshold);
+        request.setPool(POOL);
+        request.addSegment(db.getSegment("food"));
+        return request;
+    }
+
+    private static List<String> keys(List<Product> products) {
+        List<String> keys = new ArrayList<>();
+        for (Product p : products) keys.add(p.getKey());
+        return keys;
+    }
+}
@@ -0,0 +1,215 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Product DAO Test - applyUpdates overlays against a plain map of the offers, on heap and mapped catalogs
+class ProductDAOTest {
+    private static final String[] CATEGORIES = {"food", "padang", "beverage", "electronics"};
+    private static final List<Product> OFFERS = SyntheticCatalog.generate(10_000, 9);
+
+    @Test
+    void randomBatchesMatchTheReferenceOnHeap() throws InterruptedException {
+        checkRandomBatches(new ProductDAO(OFFERS), ArraySegment.class);
+    }
+
+    @Test
+    void randomBatchesMatchTheReferenceOnMappedCatalog(@TempDir Path dir) throws IOException, InterruptedException {
+        Path file = dir.resolve("catalog.tndr");
+        CatalogFile.write(OFFERS, file);
+        checkRandomBatches(new ProductDAO(file), MappedSegment.class);
+    }
+
+    // Compaction must keep a catalog's storage: mapped catalogs compact into mapped segments
+    private static void checkRandomBatches(ProductDAO db, Class<? extends CatalogSegment> storage) throws InterruptedException {
+        Map<String, Product> reference = new HashMap<>();
+        for (Product p : OFFERS) reference.put(p.getKey(), p);
+        List<String> keys = new ArrayList<>(reference.keySet());
+        Collections.sort(keys);
+        Random random = new Random(17);
+
+        int compacted = 0;
+        for (int batch = 0; batch < 40; batch++) {
+            // Every tenth batch is large enough to make the touched categories compact
+            int changes = batch % 10 == 9 ? 8_000 : 1 + random.nextInt(40);
+            List<Product> upserts = new ArrayList<>();
+            List<String> deletes = new ArrayList<>();
+            for (int i = 0; i < changes; i++) {
+                String key = keys.get(random.nextInt(keys.size()));
+                Product old = reference.get(key);
+                if (random.nextInt(5) == 0) {
+                    deletes.add(key);
+                } else if (old != null) {
+                    upserts.add(new Product(old.getSeller(), old.getName(), 1000 + random.nextInt(50_000), old.getRating(),
+                        old.getDeliveryTime(), old.getDelivery(), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        old.getSweetness(), old.getPortion(), old.getComplexity()));
+                }
+            }
+            // Deletes run before upserts, so a key in both ends up present
+            for (String key : deletes) reference.remove(key);
+            for (Product p : upserts) reference.put(p.getKey(), p);
+
+            ProductDAO.Snapshot before = db.snapshot();
+            Map<String, List<String>> beforeContents = contents(before);
+            long version = db.applyUpdates(upserts, deletes);
+            assertEquals(before.getVersion() + 1, version);
+            assertEquals(beforeContents, contents(before), "published snapshots never change");
+            assertEquals(expected(reference), contents(db.snapshot()), "batch " + batch);
+            assertEquals(reference.size(), db.size());
+            if (changes > 40) {
+                db.awaitCompactions();
+                assertEquals(expected(reference), contents(db.snapshot()), "compacted batch " + batch);
+                for (CatalogSegment segment : db.snapshot().getSegments()) {
+                    if (!(segment instanceof OverlaySegment)) compacted++;
+                    CatalogSegment base = segment instanceof OverlaySegment ? ((OverlaySegment) segment).base() : segment;
+                    assertSame(storage, base.getClass(), segment.getCategory());
+                }
+            }
+        }
+        assertTrue(compacted > 0, "some overlay was compacted");
+        for (CatalogSegment segment : db.snapshot().getSegments()) {
+            for (int row = 0; row < segment.size(); row++) {
+                String key = segment.product(row).getKey();
+                assertEquals(segment.isLive(row), segment.rowOf(key) == row, key);
+            }
+        }
+    }
+
+    @Test
+    void updatesAreSearchableAndDeletesDisappear() {
+        ProductDAO db = new ProductDAO(OFFERS);
+        Product first = db.getSegment("food").product(0);
+        Product renamed = new Product(first.getSeller(), first.getName(), first.getPrice(), first.getRating(), first.getDeliveryTime(),
+            first.getDelivery(), "beverage", first.getSweetness(), first.getPortion(), first.getComplexity());
+        CatalogSegment food = db.getSegment("food");
+        db.applyUpdates(Collections.singletonList(renamed), Collections.emptyList());
+        assertSame(food.product(0), first, "the old segment still serves readers of the old snapshot");
+        assertFalse(db.getSegment("food").isLive(0));
+        assertEquals("beverage", db.getSegment("beverage").product(db.getSegment("beverage").rowOf(first.getKey())).getCategory());
+
+        db.applyUpdates(Collections.emptyList(), Collections.singletonList(first.getKey()));
+        for (CatalogSegment segment : db.snapshot().getSegments()) assertEquals(-1, segment.rowOf(first.getKey()));
+    }
+
+    @Test
+    void writesDuringCompactionAreReplayedOntoTheResult() {
+        ProductDAO db = new ProductDAO(OFFERS);
+        CatalogSegment food = db.getSegment("food");
+        List<Product> firstBatch = new ArrayList<>();
+        for (int row = 0; row < 30; row++) firstBatch.add(repriced(food.product(row), 1_000 + row));
+        db.applyUpdates(firstBatch, Collections.singletonList(food.product(40).getKey()));
+        OverlaySegment overlay = (OverlaySegment) db.getSegment("food");
+        CatalogSegment compacted = new ArraySegment("food", new ArrayList<>(overlay.getProducts()));
+
+        // While compaction runs: update and delete delta offers, delete base offers, add new ones
+        List<Product> secondBatch = new ArrayList<>();
+        for (int row = 0; row < 10; row++) secondBatch.add(repriced(food.product(row), 2_000 + row));
+        for (int row = 100; row < 110; row++) secondBatch.add(repriced(food.product(row), 3_000 + row));
+        secondBatch.add(burger("Burger Stop", "Brand New Burger", 12_000));
+        List<String> deletes = new ArrayList<>();
+        for (int row = 20; row < 25; row++) deletes.add(food.product(row).getKey());
+        for (int row = 200; row < 205; row++) deletes.add(food.product(row).getKey());
+        db.applyUpdates(secondBatch, deletes);
+        OverlaySegment latest = (OverlaySegment) db.getSegment("food");
+
+        CatalogSegment rebased = ProductDAO.rebase(latest, overlay, compacted);
+        assertSame(compacted, ((OverlaySegment) rebased).base());
+        assertEquals(live(latest), live(rebased));
+        for (int row : rebased.liveRows()) assertEquals(row, rebased.rowOf(rebased.product(row).getKey()));
+        assertEquals(-1, rebased.rowOf(food.product(20).getKey()));
+        assertEquals(-1, rebased.rowOf(food.product(200).getKey()));
+    }
+
+    private static Product repriced(Product p, int price) {
+        return new Product(p.getSeller(), p.getName(), price, p.getRating(), p.getDeliveryTime(), p.getDelivery(), p.getCategory(),
+            p.getSweetness(), p.getPortion(), p.getComplexity());
+    }
+
+    private static List<String> live(CatalogSegment segment) {
+        List<String> rows = new ArrayList<>();
+        for (int row : segment.liveRows()) rows.add(CatalogFileTest.describe(segment.product(row)));
+        Collections.sort(rows);
+        return rows;
+    }
+
+    @Test
+    void updatedOfferKeepsItsTextRank() {
+        List<Product> offers = new ArrayList<>(OFFERS);
+        offers.add(burger("Burger Stop", "Beef Burger", 30_000));
+        offers.add(burger("Grill", "Double Beef Burger", 36_000));
+        offers.add(burger("Grill", "Beef Burger Family Pack with Fries and Cola", 85_000));
+        offers.add(burger("Grill", "Chicken Burger", 27_000));
+        offers.add(burger("Sea", "Fish Burger", 29_000));
+        offers.add(burger("Padang Sari", "Beef Rendang", 25_000));
+        ProductDAO db = new ProductDAO(offers);
+        List<String> before = textSearch(db, "beef burger");
+        assertEquals(Product.key("Burger Stop", "Beef Burger"), before.get(0));
+
+        // Only the price changes: the offer moves to the overlay's delta but must rank as in a freshly loaded catalog
+        Product repriced = burger("Burger Stop", "Beef Burger", 29_500);
+        db.applyUpdates(Collections.singletonList(repriced), Collections.emptyList());
+        assertTrue(db.getSegment("food") instanceof OverlaySegment);
+        offers.set(offers.size() - 6, repriced);
+        assertEquals(before, textSearch(db, "beef burger"));
+        assertEquals(textSearch(new ProductDAO(offers), "beef burger"), textSearch(db, "beef burger"));
+    }
+
+    private static Product burger(String seller, String name, int price) {
+        return new Product(seller, name, price, 4.6, 15, "Free", "food", 2, "normal", "simple");
+    }
+
+    private static List<String> textSearch(ProductDAO db, String query) {
+        SearchRequest request = new SearchRequest(query);
+        assertTrue(request.addTextMatches(db.snapshot().getSegments()));
+        List<String> keys = new ArrayList<>();
+        for (Product p : request.getTopResults(6)) keys.add(p.getKey());
+        return keys;
+    }
+
+    @Test
+    void deletingEveryOfferRemovesTheCategory() {
+        List<Product> drinks = new ArrayList<>();
+        for (Product p : OFFERS) if (p.getCategory().equals("beverage")) drinks.add(p);
+        ProductDAO db = new ProductDAO(OFFERS);
+        List<String> keys = new ArrayList<>();
+        for (Product p : drinks) keys.add(p.getKey());
+        db.applyUpdates(Collections.emptyList(), keys);
+        assertNull(db.getSegment("beverage"));
+        assertTrue(db.getByCategory("beverage").isEmpty());
+        assertEquals(OFFERS.size() - drinks.size(), db.size());
+    }
+
+    private static Map<String, List<String>> contents(ProductDAO.Snapshot snapshot) {
+        Map<String, List<String>> contents = new TreeMap<>();
+        for (CatalogSegment segment : snapshot.getSegments()) {
+            List<String> rows = new ArrayList<>();
+            for (int row : segment.liveRows()) rows.add(CatalogFileTest.describe(segment.product(row)));
+            Collections.sort(rows);
+            contents.put(segment.getCategory(), rows);
+        }
+        return contents;
+    }
+
+    private static Map<String, List<String>> expected(Map<String, Product> reference) {
+        Map<String, List<String>> contents = new TreeMap<>();
+        for (Product p : reference.values()) contents.computeIfAbsent(p.getCategory(), c -> new ArrayList<>()).add(CatalogFileTest.describe(p));
+        for (List<String> rows : contents.values()) Collections.sort(rows);
+        return contents;
+    }
+}
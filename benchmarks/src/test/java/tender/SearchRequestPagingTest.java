@@ -0,0 +1,70 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+// Search Request Paging Test - TopKSelector ordering and nextPage continuing where the last page ended
+class SearchRequestPagingTest {
+    private static final List<Product> OFFERS = SyntheticCatalog.generate(5_000, 7);
+
+    @Test
+    void selectorRanksByScoreThenPriceThenCandidateOrder() {
+        int[] scores = {3, 5, 5, 1, 5};
+        int[] prices = {10, 20, 10, 5, 10};
+        assertArrayEquals(new int[] {2, 4, 1, 0, 3}, new TopKSelector(scores, prices, false, 5).offerRange(0, 5, -1).drain());
+        assertArrayEquals(new int[] {3, 2, 4, 0}, new TopKSelector(scores, prices, true, 4).offerRange(0, 5, -1).drain());
+        // Only candidates ranked after candidate 4 are offered
+        assertArrayEquals(new int[] {1, 0}, new TopKSelector(scores, prices, false, 2).offerRange(0, 5, 4).drain());
+    }
+
+    @Test
+    void pagesConcatenateToTheFullRanking() {
+        for (SortKey sortKey : SortKey.values()) {
+            List<Product> full = request("cheap fast food", sortKey).getTopResults(OFFERS.size());
+            SearchRequest paged = request("cheap fast food", sortKey);
+            List<Product> pages = new ArrayList<>(paged.getTopResults(37));
+            List<Product> page;
+            while (!(page = paged.nextPage(37).asList()).isEmpty()) pages.addAll(page);
+            assertEquals(keys(full), keys(pages), sortKey.name());
+        }
+    }
+
+    @Test
+    void segmentAndProductSourcesRankAlike() {
+        ProductDAO db = new ProductDAO(OFFERS);
+        SearchRequest fromSegment = new SearchRequest("sweet large drink");
+        fromSegment.addSegment(db.getSegment(fromSegment.getCategory()));
+        SearchRequest fromProducts = new SearchRequest("sweet large drink");
+        fromProducts.addProducts(db.getByCategory(fromProducts.getCategory()));
+        assertEquals(keys(fromProducts.getTopResults(200)), keys(fromSegment.getTopResults(200)));
+    }
+
+    @Test
+    void totalPriceCapFiltersCandidates() {
+        SearchRequest capped = new SearchRequest("food");
+        capped.setMaxTotalPrice(9_000);
+        capped.addSegment(new ProductDAO(OFFERS).getSegment("food"));
+        List<Product> results = capped.getTopResults(OFFERS.size());
+        assertTrue(results.stream().allMatch(p -> p.getTotalPrice() <= 9_000));
+        assertEquals(OFFERS.stream().filter(p -> p.getCategory().equals("food") && p.getTotalPrice() <= 9_000).count(), results.size());
+    }
+
+    static SearchRequest request(String query, SortKey sortKey) {
+        SearchRequest request = new SearchRequest(query);
+        request.setSortKey(sortKey);
+        request.addProducts(OFFERS);
+        return request;
+    }
+
+    static List<String> keys(List<Product> products) {
+        List<String> keys = new ArrayList<>(products.size());
+        for (Product p : products) keys.add(p.getKey());
+        return keys;
+    }
+}
@@ -0,0 +1,107 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+// Shard Coordinator Test - Seller-partitioned shards on loopback score text searches exactly as a single node
+class ShardCoordinatorTest {
+    private static final String[] WORDS = {"burger", "chicken", "rice", "sugar", "drink", "beef", "fried", "noodle", "tea", "spicy", "cheese", "milk"};
+    private static final String[] CATEGORIES = {"food", "padang", "beverage"};
+    private static final List<Product> OFFERS = offers(1500, 7);
+    private static final List<HttpServer> servers = new ArrayList<>();
+    private static TenderService single;
+    private static ShardCoordinator coordinator;
+
+    @BeforeAll
+    static void startShards() throws IOException {
+        single = new TenderService(new ProductDAO(OFFERS));
+        List<URI> shards = new ArrayList<>();
+        for (List<Product> part : ShardKey.SELLER.partition(OFFERS, 3)) {
+            HttpServer server = TenderService.startHttp(new TenderService(new ProductDAO(part)),
+                                                        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            servers.add(server);
+            shards.add(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"));
+        }
+        coordinator = new ShardCoordinator(shards, ShardKey.SELLER, Duration.ofSeconds(10));
+    }
+
+    @AfterAll
+    static void stopShards() {
+        for (HttpServer server : servers) server.stop(0);
+    }
+
+    // Every match, so ties at the cut-off cannot differ; offers tied on score and price may still swap places
+    @Test
+    void sellerShardsScoreTextLikeOneNode() {
+        for (String query : new String[] {"burger", "chicken rice", "sugar drink", "chese", "burg", "cheap fried rice"}) {
+            for (SortKey sortKey : SortKey.values()) {
+                TenderResult expected = single.search(query, TenderService.MAX_LIMIT, sortKey, Integer.MAX_VALUE);
+                TenderResult actual = coordinator.search(query, TenderService.MAX_LIMIT, sortKey, Integer.MAX_VALUE);
+                assertTrue(expected.isTextMatched(), query);
+                assertTrue(expected.getResults().size() < TenderService.MAX_LIMIT, query);
+                assertFalse(actual.isPartial(), query);
+                assertEquals(rankKeys(expected, sortKey), rankKeys(actual, sortKey), query + " " + sortKey);
+                assertEquals(scores(expected), scores(actual), query + " " + sortKey);
+            }
+        }
+    }
+
+    @Test
+    void statisticsSumOverShards() {
+        for (String query : new String[] {"chese noodle", "sugar drink"}) {
+            Map<String, Object> local = Json.parseObject(TextIndex.Stats.toJson(single.textStats(query)));
+            Map<String, Object> merged = Json.parseObject(TextIndex.Stats.toJson(coordinator.textStats(query)));
+            assertFalse(local.isEmpty(), query);
+            assertEquals(local, merged, query);
+        }
+    }
+
+    // Names of one to three words from a small vocabulary, so document frequencies differ between shards
+    private static List<Product> offers(int size, long seed) {
+        Random random = new Random(seed);
+        List<Product> offers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder name = new StringBuilder("Item" + i);
+            for (int w = random.nextInt(3); w >= 0; w--) name.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            offers.add(new Product("Seller " + random.nextInt(40), name.toString(), 3000 + random.nextInt(60) * 500,
+                                   3.5 + random.nextInt(16) / 10.0, 3 + random.nextInt(40), random.nextBoolean() ? "Free" : "5k",
+                                   CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(5), "normal", "simple"));
+        }
+        return offers;
+    }
+
+    private static List<String> rankKeys(TenderResult result, SortKey sortKey) {
+        List<String> keys = new ArrayList<>();
+        RankedResults results = result.getResults();
+        for (int i = 0; i < results.size(); i++) {
+            Product p = results.product(i);
+            keys.add(results.score(i) + "/" + (sortKey == SortKey.TOTAL_PRICE ? p.getTotalPrice() : p.getPrice()));
+        }
+        return keys;
+    }
+
+    private static Map<String, Integer> scores(TenderResult result) {
+        Map<String, Integer> scores = new HashMap<>();
+        RankedResults results = result.getResults();
+        for (int i = 0; i < results.size(); i++) scores.put(results.product(i).getKey(), results.score(i));
+        return scores;
+    }
+}
@@ -0,0 +1,105 @@
+package tender;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+// Text Index Test - Varint postings, BM25 ordering, typo and prefix expansion
+class TextIndexTest {
+    private static Product offer(String seller, String name) {
+        return new Product(seller, name, 10000, 4.5, 10, "Free", "food", 2, "normal", "simple");
+    }
+
+    private static TextIndex index(List<Product> offers) {
+        return TextIndex.build(new ArraySegment("food", offers));
+    }
+
+    private static float scoreOf(TextIndex.Hits hits, int doc) {
+        for (int i = 0; i < hits.size(); i++) if (hits.doc(i) == doc) return hits.score(i);
+        return 0;
+    }
+
+    private static List<Integer> docs(TextIndex.Hits hits) {
+        List<Integer> docs = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) docs.add(hits.doc(i));
+        return docs;
+    }
+
+    @Test
+    void postingsSurviveLargeGapsAndTermFrequencies() {
+        List<Product> offers = new ArrayList<>();
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < 200; i++) repeated.append("rendang ");
+        offers.add(offer("Warung", repeated.toString()));
+        for (int i = 1; i < 40_000; i++) offers.add(offer("Seller " + i, "Offer " + i));
+        offers.add(offer("Warung", "Rendang"));
+        TextIndex index = index(offers);
+
+        TextIndex.Hits hits = index.search(Arrays.asList("rendang"));
+        assertEquals(Arrays.asList(0, 40_000), docs(hits));
+        assertTrue(scoreOf(hits, 0) > scoreOf(hits, 40_000), "more occurrences score higher despite the longer text");
+        assertEquals(Arrays.asList(39_999), docs(index.search(Arrays.asList("39999"))));
+    }
+
+    @Test
+    void rarerTermsAndShorterTextsScoreHigher() {
+        List<Product> offers = Arrays.asList(
+            offer("Burger Stop", "Beef Burger"),
+            offer("Burger Stop", "Chicken Burger"),
+            offer("Burger Stop", "Fish Burger with Extra Cheese Sauce"),
+            offer("Pizza House", "Chicken Pizza"));
+        TextIndex index = index(offers);
+        TextIndex.Hits chicken = index.search(Arrays.asList("chicken", "burger"));
+        assertEquals(Arrays.asList(0, 1, 2, 3), docs(chicken));
+        assertTrue(scoreOf(chicken, 1) > scoreOf(chicken, 0), "both words beat one");
+        assertTrue(scoreOf(chicken, 0) > scoreOf(chicken, 2), "the same words in a shorter text score higher");
+
+        TextIndex.Hits pizza = index.search(Arrays.asList("pizza"));
+        TextIndex.Hits burger = index.search(Arrays.asList("burger"));
+        assertTrue(scoreOf(pizza, 3) > scoreOf(burger, 0), "a rare word is worth more than a common one");
+    }
+
+    @Test
+    void typosAndPrefixesMatchButRankBelowExactHits() {
+        TextIndex index = index(Arrays.asList(
+            offer("Burger Stop", "Double Burger"),
+            offer("Party Place", "Burgers Party Pack"),
+            offer("Kopi Kenangan", "Palm Sugar Coffee"),
+            offer("Toko", "Charger 500"),
+            offer("Toko", "Charger 501")));
+
+        TextIndex.Hits typo = index.search(Arrays.asList("burgr"));
+        assertEquals(Arrays.asList(0), docs(typo));
+        TextIndex.Hits exact = index.search(Arrays.asList("burger"));
+        assertTrue(scoreOf(exact, 0) > scoreOf(typo, 0));
+        assertTrue(scoreOf(exact, 0) > scoreOf(exact, 1), "the prefix match counts for less");
+
+        assertEquals(Arrays.asList(2), docs(index.search(Arrays.asList("cofee"))));
+        assertEquals(Arrays.asList(2), docs(index.search(Arrays.asList("coffe"))));
+        assertEquals(Arrays.asList(2), docs(index.search(Arrays.asList("cofefe"))), "a swap is one edit");
+        assertEquals(Arrays.asList(3), docs(index.search(Arrays.asList("500"))), "numbers only match exactly");
+        assertEquals(0, index.search(Arrays.asList("xyz")).size());
+    }
+
+    @Test
+    void editDistanceCountsSwapsAsOneEditAndStopsAtTheLimit() {
+        assertEquals(0, TextIndex.editDistance("burger", "burger", 2));
+        assertEquals(1, TextIndex.editDistance("burger", "bugrer", 2));
+        assertEquals(1, TextIndex.editDistance("burger", "burgers", 2));
+        assertEquals(2, TextIndex.editDistance("coffee", "cofe", 2));
+        assertEquals(3, TextIndex.editDistance("kitten", "sitting", 3));
+        assertEquals(2, TextIndex.editDistance("kitten", "sitting", 1));
+    }
+
+    @Test
+    void queryTermsDropStopWordsAndDictionaryTerms() {
+        // "cheap" steers the criteria and "rendang" the category, so neither is searched as text
+        assertEquals(Arrays.asList("beef", "burger", "500"),
+            TextIndex.queryTerms("I want a cheap Beef-Burger 500 with rendang, beef please", KeywordDictionary.defaults()));
+    }
+}